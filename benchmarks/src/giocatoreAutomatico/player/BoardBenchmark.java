@@ -0,0 +1,88 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package giocatoreAutomatico.player;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the operations on the packed boards used inside the search:
+ * the line moves of the RowTables (which replaced Row.moveRow), the board
+ * moves and the count of the free cells. Each invocation works on every
+ * position of the Corpus, so the score is given per position (per line or per
+ * direction where stated).
+ * @author Martino Pilia
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    private static final int POSITIONS = Corpus.POSITIONS;
+
+    private final long[] boards = Corpus.BOARDS.clone();
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * BitBoard.GRID_SIZE)
+    public void moveRow(Blackhole bh) {
+        for (long board : boards) {
+            for (int y = 0; y < BitBoard.GRID_SIZE; y++)
+                bh.consume(RowTables.left(BitBoard.row(board, y)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * 4)
+    public void move(Blackhole bh) {
+        for (long board : boards) {
+            for (int m = 0; m < 4; m++)
+                bh.consume(BitBoard.move(board, m));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * 4)
+    public void isValid(Blackhole bh) {
+        for (long board : boards) {
+            for (int m = 0; m < 4; m++)
+                bh.consume(BitBoard.isValid(board, m));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void emptyCount(Blackhole bh) {
+        for (long board : boards)
+            bh.consume(BitBoard.emptyCount(board));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+import game2048.Location;
+
+/**
+ * This class holds the fixed set of positions used by the benchmarks. The
+ * positions have been taken from two minimax games at depth 3 played by
+ * game2048.SelfPlay with the seeds 0 and 1, at increasing move numbers, so
+ * they cover the opening, the middle game and the crowded grids of the end
+ * of a game. The set must not change, or the results would not be comparable
+ * across commits.
+ * @author Martino Pilia
+ */
+final class Corpus {
+
+    /** Number of positions, as a constant for the benchmark annotations. */
+    static final int POSITIONS = 13;
+
+    /** The positions, packed in BitBoards. */
+    static final long[] BOARDS = {
+        0x0001001210030234L, // game 0, move 20
+        0x0001001200162147L, // game 0, move 100
+        0x1152003500060019L, // game 0, move 300
+        0x114503360227101AL, // game 0, move 600
+        0x136213811679046AL, // game 0, move 1000
+        0x0100000200030025L, // game 1, move 20
+        0x0022101400060007L, // game 1, move 100
+        0x0352002510160009L, // game 1, move 300
+        0x000010120038231AL, // game 1, move 600
+        0x025102360024001BL, // game 1, move 1000
+        0x12460137010A000BL, // game 1, move 1500
+        0x003310340128000CL, // game 1, move 2000
+        0x00370028112A000CL, // game 1, move 2500
+    };
+
+    static {
+        if (BOARDS.length != POSITIONS)
+            throw new IllegalStateException("Wrong number of positions");
+    }
+
+    /**
+     * This class is not intended to be instantiated.
+     */
+    private Corpus() {
+    }
+
+    /**
+     * Return the positions as MyGriglia objects.
+     * @return A grid for each position, with -1 for the empty cells.
+     */
+    static MyGriglia[] grids() {
+        MyGriglia[] grids = new MyGriglia[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            grids[i] = new MyGriglia();
+            for (int x = 0; x < BitBoard.GRID_SIZE; x++) {
+                for (int y = 0; y < BitBoard.GRID_SIZE; y++) {
+                    int value = BitBoard.getValue(BOARDS[i], x, y);
+                    grids[i].put(Location.of(x, y), value);
+                }
+            }
+        }
+        return grids;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package giocatoreAutomatico.player;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the evaluation function of the player, which is computed
+ * by MyGiocatoreAutomatico.evaluate through the Evaluator: the evaluation
+ * along the main path, the evaluation along the 8 symmetric paths and the
+ * incremental update after a move. Each invocation works on every position of
+ * the Corpus, so the score is given per position (and per direction for the
+ * update).
+ * @author Martino Pilia
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EvaluatorBenchmark {
+
+    private static final int POSITIONS = Corpus.POSITIONS;
+
+    private final long[] boards = Corpus.BOARDS.clone();
+    private final long[][] moved = new long[POSITIONS][4];
+    private final double[] evaluations = new double[POSITIONS];
+    private Evaluator evaluator;
+
+    @Setup
+    public void setup() {
+        evaluator = new Evaluator(0.25); // base used by the player
+        for (int i = 0; i < POSITIONS; i++) {
+            evaluations[i] = evaluator.evaluate(boards[i]);
+            for (int m = 0; m < 4; m++)
+                moved[i][m] = BitBoard.move(boards[i], m);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void evaluate(Blackhole bh) {
+        for (long board : boards)
+            bh.consume(evaluator.evaluate(board));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void multiPathEvaluate(Blackhole bh) {
+        for (long board : boards)
+            bh.consume(evaluator.multiPathEvaluate(board));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * 4)
+    public void update(Blackhole bh) {
+        for (int i = 0; i < POSITIONS; i++) {
+            for (int m = 0; m < 4; m++)
+                bh.consume(evaluator.update(evaluations[i], boards[i],
+                        moved[i][m], m));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package giocatoreAutomatico.player;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the MyGriglia operations used by the player outside the
+ * search: moves, validity checks and free cells. Each invocation works on
+ * every position of the Corpus, so the score is given per position (and per
+ * direction for the moves).
+ * The move works in place, so the move benchmark includes the copy of the
+ * grid; the copy benchmark measures the copy alone.
+ * @author Martino Pilia
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GrigliaBenchmark {
+
+    private static final int POSITIONS = Corpus.POSITIONS;
+
+    private MyGriglia[] grids;
+
+    @Setup
+    public void setup() {
+        grids = Corpus.grids();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * 4)
+    public void copy(Blackhole bh) {
+        for (MyGriglia g : grids) {
+            for (int m = 0; m < 4; m++)
+                bh.consume(new MyGriglia(g));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * 4)
+    public void move(Blackhole bh) {
+        for (MyGriglia g : grids) {
+            for (int m = 0; m < 4; m++) {
+                MyGriglia copy = new MyGriglia(g);
+                copy.move(m);
+                bh.consume(copy);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS * 4)
+    public void isValida(Blackhole bh) {
+        for (MyGriglia g : grids) {
+            for (int m = 0; m < 4; m++)
+                bh.consume(g.isValida(m));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void freeLocations(Blackhole bh) {
+        for (MyGriglia g : grids)
+            bh.consume(g.freeLocations());
+    }
+}
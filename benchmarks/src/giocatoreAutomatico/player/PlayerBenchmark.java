@@ -0,0 +1,93 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package giocatoreAutomatico.player;
+
+import game2048.Location;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for a full move of the player, through prossimaMossa, for each
+ * search style and depth. Each invocation asks a move for the next position
+ * of the Corpus.
+ * Each invocation invalidates the transposition table, otherwise the
+ * positions of the Corpus would be found in the table after the first round,
+ * and only the lookups would be measured. The invalidation takes constant
+ * time, so it's measured with the search instead of running in a setup of
+ * each invocation, which would be longer than the shallow searches and would
+ * distort their timing; the table is zero filled only before each iteration.
+ * The search runs on a single thread, so the results do not depend on the number
+ * of processors of the machine.
+ * @author Martino Pilia
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-DgiocatoreAutomatico.threads=1")
+@State(Scope.Thread)
+public class PlayerBenchmark {
+
+    @Param({"3", "4"})
+    private int style;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7"})
+    private int depth;
+
+    private MyGriglia[] grids;
+    private MyGiocatoreAutomatico player;
+    private TranspositionTable table;
+    private int next;
+
+    @Setup
+    public void setup() {
+        player = new MyGiocatoreAutomatico();
+        table = player.getTranspositionTable();
+        grids = Corpus.grids();
+        for (MyGriglia g : grids) {
+            g.put(Location.of(-1, -1), style);
+            g.put(Location.of(-1, -2), depth);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @Benchmark
+    public int prossimaMossa() {
+        MyGriglia g = grids[next];
+        next = (next + 1) % grids.length;
+        table.invalidate();
+        return player.prossimaMossa(g);
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import giocatoreAutomatico.Griglia;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This class represents a game grid backed by an array of cells, indexed by
+ * <code>y * gridSize + x</code>. The Map methods are provided for
+ * compatibility with the Griglia interface: each cell is always a key of the
+ * map, mapped to -1 when empty, and the keys outside the grid (as the
+ * advanced settings) are kept in a separate map.
+ * The primitive accessors work on the array without boxing or hashing, and
+ * use 0 for an empty cell, as the GameEngine does, so the grid of the engine
+ * can be copied with a single array copy. An automatic player can detect this
+ * class and read the grid through them.
+ * @author Martino Pilia
+ */
+public class ArrayGrid extends AbstractMap<Location, Integer> implements Griglia {
+
+    private final int gridSize;
+    private final int[] cells; // tile values, 0 for an empty cell
+    private final Map<Location, Integer> others = new HashMap<>();
+    private Set<Map.Entry<Location, Integer>> entrySet = null;
+
+    /**
+     * This is the constructor for the class. The default size for the grid
+     * is 4.
+     */
+    public ArrayGrid() {
+        this(4);
+    }
+
+    /**
+     * This is the constructor for the class. Builds an empty grid of the
+     * desired size.
+     * @param gridSize Size of the grid.
+     */
+    public ArrayGrid(int gridSize) {
+        this.gridSize = gridSize;
+        this.cells = new int[gridSize * gridSize];
+    }
+
+    /**
+     * This is a copy constructor for the class. The cells and the other keys
+     * are copied, so the two grids are independent.
+     * @param griglia Grid to be copied.
+     */
+    public ArrayGrid(ArrayGrid griglia) {
+        this(griglia.gridSize);
+        setCells(griglia.cells);
+        others.putAll(griglia.others);
+    }
+
+    /**
+     * Return the size of the grid.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Return the value of a cell.
+     * @param index Index of the cell (<code>y * gridSize + x</code>).
+     * @return The tile value, <code>0</code> for an empty cell.
+     */
+    public int getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Set the value of a cell.
+     * @param index Index of the cell (<code>y * gridSize + x</code>).
+     * @param value The tile value, <code>0</code> for an empty cell.
+     */
+    public void setCell(int index, int value) {
+        cells[index] = value;
+    }
+
+    /**
+     * Copy the values of all the cells from an array.
+     * @param values Tile values, indexed as the cells, with <code>0</code>
+     * for an empty cell.
+     */
+    public void setCells(int[] values) {
+        System.arraycopy(values, 0, cells, 0, cells.length);
+    }
+
+    /**
+     * Return the grid packed in a long, with the same layout of the BitBoard
+     * used by the automatic player: the cell with index i takes the bits from
+     * 4i to 4i+3, which hold the base 2 logarithm of the tile value (0 for
+     * an empty cell).
+     * @return The packed grid.
+     * @throws IllegalStateException if the grid is not 4x4 or a tile cannot
+     * be stored in 4 bits.
+     */
+    public long toBoard() {
+        if (gridSize != 4)
+            throw new IllegalStateException("Only a 4x4 grid can be packed");
+        long board = 0;
+        for (int i = 0; i < cells.length; i++) {
+            int value = cells[i];
+            if (value == 0)
+                continue;
+            int exp = Integer.numberOfTrailingZeros(value);
+            if (value < 2 || Integer.bitCount(value) != 1 || exp > 15)
+                throw new IllegalStateException("The value " + value
+                        + " cannot be packed");
+            board |= (long) exp << (4 * i);
+        }
+        return board;
+    }
+
+    /**
+     * Return the set of the legal moves: a move is legal when a tile has an
+     * empty cell or a tile with the same value next to it, along the
+     * direction of the move.
+     * @return A bit mask, with the bit m set if the move m is legal
+     * (0=ALTO; 1=DX; 2=BASSO; 3=SX).
+     */
+    public int legalMoves() {
+        int mask = 0;
+        for (int y = 0; y < gridSize; y++) {
+            for (int x = 0; x < gridSize; x++) {
+                int value = cells[y * gridSize + x];
+                if (value == 0)
+                    continue;
+                if (y > 0 && canMoveTo(value, x, y - 1))
+                    mask |= 1;
+                if (x < gridSize - 1 && canMoveTo(value, x + 1, y))
+                    mask |= 2;
+                if (y < gridSize - 1 && canMoveTo(value, x, y + 1))
+                    mask |= 4;
+                if (x > 0 && canMoveTo(value, x - 1, y))
+                    mask |= 8;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Check if a tile can be moved or merged in a cell.
+     */
+    private boolean canMoveTo(int value, int x, int y) {
+        int next = cells[y * gridSize + x];
+        return next == 0 || next == value;
+    }
+
+    /**
+     * Return the index of a cell, or -1 if the location is outside the grid.
+     */
+    private int indexOf(Object key) {
+        if (!(key instanceof Location))
+            return -1;
+        Location l = (Location) key;
+        if (!l.isValidFor(gridSize))
+            return -1;
+        return l.getY() * gridSize + l.getX();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Integer get(Object key) {
+        int index = indexOf(key);
+        if (index < 0)
+            return others.get(key);
+        return cells[index] == 0 ? -1 : cells[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0 || others.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * A cell is emptied putting -1 (or 0) in its location.
+     */
+    @Override
+    public Integer put(Location key, Integer value) {
+        int index = indexOf(key);
+        if (index < 0)
+            return others.put(key, value);
+        Integer old = get(key);
+        cells[index] = value == -1 ? 0 : value;
+        return old;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException if the key is a cell of the
+     * grid, which is always present.
+     */
+    @Override
+    public Integer remove(Object key) {
+        if (indexOf(key) >= 0)
+            throw new UnsupportedOperationException(
+                    "The cells of the grid cannot be removed");
+        return others.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The cells of the grid are emptied, but they are still keys of the map.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = 0;
+        others.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return cells.length + others.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<Location, Integer>> entrySet() {
+        if (entrySet == null)
+            entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        String out = "";
+        for (int j = 0; j < gridSize; j++) {        // rows
+            for (int i = 0; i < gridSize; i++)      // column
+                out += "\t" + cells[j * gridSize + i];
+            out += "\n";
+        }
+        return out;
+    }
+
+    /**
+     * This class provides the entries of the map: the cells of the grid,
+     * followed by the other keys.
+     */
+    private class EntrySet extends AbstractSet<Map.Entry<Location, Integer>> {
+
+        @Override
+        public Iterator<Map.Entry<Location, Integer>> iterator() {
+            return new Iterator<Map.Entry<Location, Integer>>() {
+                private int index = 0;
+                private boolean cell = false; // last entry is a cell
+                private final Iterator<Map.Entry<Location, Integer>> rest
+                        = others.entrySet().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return index < cells.length || rest.hasNext();
+                }
+
+                @Override
+                public Map.Entry<Location, Integer> next() {
+                    if (index < cells.length) {
+                        Location l = Location.of(index % gridSize,
+                                index / gridSize);
+                        index++;
+                        cell = true;
+                        return new CellEntry(l);
+                    }
+                    if (!rest.hasNext())
+                        throw new NoSuchElementException();
+                    cell = false;
+                    return rest.next();
+                }
+
+                @Override
+                public void remove() {
+                    if (cell)
+                        throw new UnsupportedOperationException(
+                                "The cells of the grid cannot be removed");
+                    rest.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ArrayGrid.this.size();
+        }
+    }
+
+    /**
+     * This class is an entry of the map for a cell of the grid, writing
+     * through to the array.
+     */
+    private class CellEntry implements Map.Entry<Location, Integer> {
+
+        private final Location location;
+
+        CellEntry(Location location) {
+            this.location = location;
+        }
+
+        @Override
+        public Location getKey() {
+            return location;
+        }
+
+        @Override
+        public Integer getValue() {
+            return get(location);
+        }
+
+        @Override
+        public Integer setValue(Integer value) {
+            return put(location, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return location.equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return location.hashCode() ^ getValue().hashCode();
+        }
+    }
+}
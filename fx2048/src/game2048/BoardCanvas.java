@@ -0,0 +1,122 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * This class draws the whole game board on a single Canvas, as an alternative
+ * to a Rectangle for each cell and a Tile for each tile. The size of the board
+ * does not depend on the grid size: the cells are scaled to fill it, so the
+ * cost of a frame is a few drawing calls for each cell and the scene graph
+ * does not grow with the grid. The colors and the fonts of the tiles are the
+ * ones defined for the tiles in the game stylesheet, with the font size
+ * scaled as the cells.
+ * @author Martino Pilia
+ */
+class BoardCanvas extends Canvas {
+
+    private static final Color GRID_COLOR = Color.web("#bbada0"); // game.css
+    private static final Color CELL_COLOR = Color.web("#cdc1b4");
+    private static final double GAP = 14d / GameManager.CELL_SIZE; // of a cell
+    private static final double CELL_ARC = 1d / 6; // of a cell
+    private static final double TILE_ARC = 6d / GameManager.CELL_SIZE;
+
+    private final int gridSize;
+    private final double cellSize;
+    private final Font[] fonts = new Font[32]; // scaled fonts, by log2
+
+    /**
+     * This is the constructor for the class.
+     * @param gridSize Size of the grid.
+     * @param size Width and height of the board, in pixels.
+     */
+    BoardCanvas(int gridSize, double size) {
+        super(size, size);
+        this.gridSize = gridSize;
+        this.cellSize = size / gridSize;
+    }
+
+    /**
+     * Draw the grid of the engine.
+     * @param engine The engine holding the grid.
+     */
+    void paint(GameEngine engine) {
+        GraphicsContext gc = getGraphicsContext2D();
+        double gap = GAP * cellSize;
+        double side = cellSize - gap;
+        double cellArc = CELL_ARC * cellSize;
+        double tileArc = TILE_ARC * cellSize;
+
+        gc.setFill(GRID_COLOR);
+        gc.fillRect(0, 0, getWidth(), getHeight());
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+
+        for (int y = 0; y < gridSize; y++) {
+            for (int x = 0; x < gridSize; x++) {
+                double left = x * cellSize + gap / 2;
+                double top = y * cellSize + gap / 2;
+                int value = engine.getValue(x, y);
+                gc.setFill(CELL_COLOR);
+                gc.fillRoundRect(left, top, side, side, cellArc, cellArc);
+                if (value <= 0)
+                    continue;
+                Paint background = Tile.backgroundOf(value);
+                if (background != null) {
+                    gc.setFill(background);
+                    gc.fillRoundRect(left, top, side, side, tileArc, tileArc);
+                }
+                gc.setFill(Tile.textFillOf(value));
+                gc.setFont(fontFor(value));
+                gc.fillText(Tile.textOf(value), left + side / 2,
+                        top + side / 2, side - gap);
+            }
+        }
+    }
+
+    /**
+     * Return the font of a tile value, scaled to the size of the cells.
+     */
+    private Font fontFor(int value) {
+        int exp = Integer.numberOfTrailingZeros(value);
+        if (Integer.bitCount(value) != 1)
+            return scaled(Tile.fontOf(value)); // not a valid tile, not cached
+        if (fonts[exp] == null)
+            fonts[exp] = scaled(Tile.fontOf(value));
+        return fonts[exp];
+    }
+
+    /**
+     * Return a font scaled from the tile size to the size of the cells.
+     */
+    private Font scaled(Font font) {
+        double size = font.getSize() * cellSize / GameManager.CELL_SIZE;
+        return Font.font(font.getFamily(), FontWeight.BOLD, FontPosture.REGULAR,
+                size);
+    }
+}
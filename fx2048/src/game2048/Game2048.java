@@ -68,6 +68,7 @@ public class Game2048 extends Application {
 
     private final int MAIN_WINDOW_WIDTH = 600;
     private final int MAIN_WINDOW_HEIGHT = 720;
+    private final int DEFAULT_GRID_SIZE = 4;
     
     private GameManager gameManager;
     private Bounds gameBounds;
@@ -83,14 +84,32 @@ public class Game2048 extends Application {
 	List<String> args = this.getParameters().getRaw();
 	log = Logger.getGlobal();
 	log.setLevel(Level.OFF);
-	for (String s : args) {
+	int gridSize = DEFAULT_GRID_SIZE;
+	boolean canvas = false;
+	for (int i = 0; i < args.size(); i++) {
+		String s = args.get(i);
 		if (s.equals("-d")) {
 			log.setLevel(Level.ALL);
 		}
+		if (s.equals("-c")) {
+			canvas = true;
+		}
+		if (s.equals("-s")) {
+			gridSize = i + 1 < args.size()
+				? parseGridSize(args.get(++i)) : -1;
+			if (gridSize < 0) {
+				System.err.println("Usage: java game2048.Game2048 "
+					+ "[-d] [-c] [-s size], with size from "
+					+ GameManager.MIN_GRID_SIZE + " to "
+					+ GameManager.MAX_GRID_SIZE);
+				Platform.exit();
+				return;
+			}
+		}
 	}
 
         this.primaryStage = primaryStage;
-	gameManager = new GameManager(this);
+	gameManager = new GameManager(gridSize, canvas, this);
         gameBounds = gameManager.getLayoutBounds();
         
         aiThread = gameManager.aiThread(); // using normal Thread
@@ -137,6 +156,23 @@ public class Game2048 extends Application {
         primaryStage.show();
     }
 
+    /**
+     * Parse the grid size passed with the -s option.
+     * @param arg The argument of the option.
+     * @return The grid size, or <code>-1</code> if the argument is not a
+     * number between GameManager.MIN_GRID_SIZE and GameManager.MAX_GRID_SIZE.
+     */
+    private int parseGridSize(String arg) {
+        try {
+            int size = Integer.parseInt(arg);
+            if (size >= GameManager.MIN_GRID_SIZE
+                    && size <= GameManager.MAX_GRID_SIZE)
+                return size;
+        } catch (NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
     /**
      * This method detects if the application is running on device with ARM 
      * architecture.
@@ -220,6 +256,7 @@ public class Game2048 extends Application {
             yes.setOnAction((ev) -> {
                 log.info("Exiting.");
                 aiThread.interrupt();
+                gameManager.shutdown();
                 popup.close();
                 Platform.exit();
             });
@@ -0,0 +1,418 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import giocatoreAutomatico.Griglia;
+import java.util.Random;
+
+/**
+ * This class implements the rules of the game on a plain grid of values,
+ * without any graphical object: it holds the grid and the score, applies the
+ * moves, adds the random tiles and detects the end of the game. It can be
+ * used to play games at full speed without a window; the GameManager uses it
+ * as well, and draws the animations from the tile movements reported by the
+ * engine.
+ * @author Martino Pilia
+ */
+public class GameEngine {
+
+    private final int gridSize;
+    private final int[] grid; // tile values, 0 for an empty cell
+    private final boolean[] merged;
+    private final int[][] traversals; // cell order for each direction
+    private final Random random;
+    private int score;
+    private int movePoints;
+    private int moveCount;
+
+    /**
+     * This interface receives the tile movements done by a move, in the
+     * order they are done.
+     */
+    public interface MoveListener {
+
+        /**
+         * A tile has been moved to an empty cell.
+         * @param from Starting location of the tile.
+         * @param to Final location of the tile.
+         */
+        void tileMoved(Location from, Location to);
+
+        /**
+         * A tile has been merged with another tile with the same value.
+         * @param from Location of the tile which has been moved.
+         * @param to Location of the tile it has been merged with.
+         * @param value Value of the new tile.
+         */
+        void tilesMerged(Location from, Location to, int value);
+    }
+
+    /**
+     * This is the constructor for the class. Builds an empty grid of the
+     * desired size.
+     * @param gridSize Size of the grid.
+     */
+    public GameEngine(int gridSize) {
+        this(gridSize, new GameRandom());
+    }
+
+    /**
+     * This is the constructor for the class. Builds an empty grid of the
+     * desired size, using the provided generator for the random tiles, so a
+     * game can be replayed passing a generator with the same seed.
+     * @param gridSize Size of the grid.
+     * @param random Generator for the random tiles.
+     */
+    public GameEngine(int gridSize, Random random) {
+        this.gridSize = gridSize;
+        this.grid = new int[gridSize * gridSize];
+        this.merged = new boolean[gridSize * gridSize];
+        this.random = random;
+        this.traversals = new int[Direction.values().length][];
+        for (Direction d : Direction.values()) {
+            int[] order = new int[gridSize * gridSize];
+            int n = 0;
+            for (int i = 0; i < gridSize; i++) {
+                int x = d.getX() == 1 ? gridSize - 1 - i : i;
+                for (int j = 0; j < gridSize; j++) {
+                    int y = d.getY() == 1 ? gridSize - 1 - j : j;
+                    order[n++] = index(x, y);
+                }
+            }
+            traversals[d.ordinal()] = order;
+        }
+    }
+
+    /**
+     * Return the size of the grid.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Remove all the tiles from the grid and reset the score.
+     */
+    public void clear() {
+        for (int i = 0; i < grid.length; i++)
+            grid[i] = 0;
+        score = 0;
+        movePoints = 0;
+        moveCount = 0;
+    }
+
+    /**
+     * Start a new game: the grid is cleared, then a random tile is added, and
+     * a second one with 80% chance (not a 4 if the first tile is a 4).
+     */
+    public void start() {
+        clear();
+        Location first = addRandomTile();
+        if (random.nextFloat() <= 0.8) {
+            Location second = addRandomTile();
+            if (getValue(first) == 4 && getValue(second) == 4)
+                setValue(second, 2);
+        }
+    }
+
+    /**
+     * Return the value of the tile in the desired location.
+     * @param x The x coord.
+     * @param y The y coord.
+     * @return The tile value, <code>0</code> for an empty cell.
+     */
+    public int getValue(int x, int y) {
+        return grid[index(x, y)];
+    }
+
+    /**
+     * Return the value of the tile in the desired location.
+     * @param location The location.
+     * @return The tile value, <code>0</code> for an empty cell.
+     */
+    public int getValue(Location location) {
+        return getValue(location.getX(), location.getY());
+    }
+
+    /**
+     * Put a tile in the desired location, replacing the current content.
+     * @param location The location.
+     * @param value The tile value, <code>0</code> to empty the cell.
+     */
+    public void setValue(Location location, int value) {
+        grid[index(location.getX(), location.getY())] = value;
+    }
+
+    /**
+     * Return the score of the game.
+     * @return The sum of the values of all the merged tiles.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Set the score of the game (used when a game is restored).
+     * @param score The score.
+     */
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    /**
+     * Return the points earned with the last move.
+     * @return The sum of the values of the tiles merged by the last move.
+     */
+    public int getMovePoints() {
+        return movePoints;
+    }
+
+    /**
+     * Return the number of moves done since the game started.
+     * @return Number of valid moves.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Set the number of moves done since the game started (used when a game
+     * is restored).
+     * @param moveCount Number of valid moves.
+     */
+    public void setMoveCount(int moveCount) {
+        this.moveCount = moveCount;
+    }
+
+    /**
+     * Return the state of the generator of the random tiles.
+     * @return The state, or <code>-1</code> if the generator is not a
+     * GameRandom and its state cannot be read.
+     */
+    public long getRandomState() {
+        if (random instanceof GameRandom)
+            return ((GameRandom) random).getState();
+        return -1;
+    }
+
+    /**
+     * Restore the state of the generator of the random tiles, so the game
+     * goes on with the same tiles it had when the state was read. Nothing
+     * is done if the generator is not a GameRandom or the state is
+     * <code>-1</code>.
+     * @param state The state returned by
+     * {@link #getRandomState() getRandomState}.
+     */
+    public void setRandomState(long state) {
+        if (random instanceof GameRandom && state != -1)
+            ((GameRandom) random).setState(state);
+    }
+
+    /**
+     * Return the value of the highest tile in the grid.
+     * @return The highest tile value, <code>0</code> for an empty grid.
+     */
+    public int getMaxTile() {
+        int max = 0;
+        for (int value : grid)
+            max = Math.max(max, value);
+        return max;
+    }
+
+    /**
+     * This method moves the tiles in the desired direction, following the
+     * game rules. No random tile is added.
+     * @param direction Direction for the move.
+     * @return <code>true</code> if at least a tile has been moved,
+     * <code>false</code> otherwise.
+     */
+    public boolean move(Direction direction) {
+        return move(direction, null);
+    }
+
+    /**
+     * This method moves the tiles in the desired direction, following the
+     * game rules, and reports each tile movement to the listener. No random
+     * tile is added.
+     * @param direction Direction for the move.
+     * @param listener Listener for the tile movements, or <code>null</code>.
+     * @return <code>true</code> if at least a tile has been moved,
+     * <code>false</code> otherwise.
+     */
+    public boolean move(Direction direction, MoveListener listener) {
+        int dx = direction.getX();
+        int dy = direction.getY();
+        boolean moved = false;
+        movePoints = 0;
+
+        for (int cell : traversals[direction.ordinal()]) {
+            int value = grid[cell];
+            if (value == 0)
+                continue;
+            int x = cell % gridSize;
+            int y = cell / gridSize;
+
+            // farthest available location
+            int fx = x;
+            int fy = y;
+            while (isValid(fx + dx, fy + dy) && grid[index(fx + dx, fy + dy)] == 0) {
+                fx += dx;
+                fy += dy;
+            }
+
+            // check for a possible merge
+            int nx = fx + dx;
+            int ny = fy + dy;
+            int next = isValid(nx, ny) ? index(nx, ny) : -1;
+            if (next != -1 && grid[next] == value && !merged[next]) {
+                grid[next] = 2 * value;
+                grid[cell] = 0;
+                merged[next] = true;
+                movePoints += 2 * value;
+                moved = true;
+                if (listener != null)
+                    listener.tilesMerged(Location.of(x, y),
+                            Location.of(nx, ny), 2 * value);
+            } else if (fx != x || fy != y) {
+                grid[index(fx, fy)] = value;
+                grid[cell] = 0;
+                moved = true;
+                if (listener != null)
+                    listener.tileMoved(Location.of(x, y), Location.of(fx, fy));
+            }
+        }
+
+        for (int i = 0; i < merged.length; i++)
+            merged[i] = false;
+        score += movePoints;
+        if (moved)
+            moveCount++;
+        return moved;
+    }
+
+    /**
+     * Add a tile in a random free location: a 2 with 90% chance, a 4
+     * otherwise.
+     * @return The location of the new tile, or <code>null</code> if the grid
+     * is full.
+     */
+    public Location addRandomTile() {
+        int free = 0;
+        for (int value : grid) {
+            if (value == 0)
+                free++;
+        }
+        if (free == 0)
+            return null;
+
+        int n = random.nextInt(free);
+        int cell = 0;
+        while (grid[cell] != 0 || n-- > 0) {
+            cell++;
+        }
+        grid[cell] = random.nextDouble() < 0.9 ? 2 : 4;
+        return Location.of(cell % gridSize, cell / gridSize);
+    }
+
+    /**
+     * This method verifies if there are free cells or tiles which can be
+     * merged, so the game can go on.
+     * @return <code>true</code> if a move is available,
+     * <code>false</code> otherwise.
+     */
+    public boolean movesAvailable() {
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                int value = grid[index(x, y)];
+                if (value == 0
+                        || (x + 1 < gridSize && grid[index(x + 1, y)] == value)
+                        || (y + 1 < gridSize && grid[index(x, y + 1)] == value))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the game is over.
+     * @return <code>true</code> if no move is available,
+     * <code>false</code> otherwise.
+     */
+    public boolean isGameOver() {
+        return !movesAvailable();
+    }
+
+    /**
+     * Fill a Griglia object with the current grid, using -1 for the empty
+     * cells. Other keys in the Griglia (as the advanced settings) are not
+     * modified.
+     * @param griglia The grid to be filled.
+     * @return The same grid passed as argument.
+     */
+    public Griglia fill(Griglia griglia) {
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                int value = grid[index(i, j)];
+                griglia.put(Location.of(i, j), value == 0 ? -1 : value);
+            }
+        }
+        return griglia;
+    }
+
+    /**
+     * Fill an ArrayGrid with the current grid, copying the array of the
+     * cells. Other keys in the grid (as the advanced settings) are not
+     * modified.
+     * @param griglia The grid to be filled.
+     * @return The same grid passed as argument.
+     */
+    public ArrayGrid fill(ArrayGrid griglia) {
+        griglia.setCells(grid);
+        return griglia;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        String out = "";
+        for (int j = 0; j < gridSize; j++) {        // rows
+            for (int i = 0; i < gridSize; i++)      // column
+                out += "\t" + grid[index(i, j)];
+            out += "\n";
+        }
+        return out;
+    }
+
+    /**
+     * Return the index of a cell in the grid array.
+     */
+    private int index(int x, int y) {
+        return y * gridSize + x;
+    }
+
+    /**
+     * Check if a location is inside the grid.
+     */
+    private boolean isValid(int x, int y) {
+        return x >= 0 && x < gridSize && y >= 0 && y < gridSize;
+    }
+}
@@ -38,25 +38,30 @@ package game2048;
 
 import giocatoreAutomatico.GiocatoreAutomatico;
 import giocatoreAutomatico.Griglia;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.IntBinaryOperator;
 import java.util.logging.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.ParallelTransition;
@@ -66,6 +71,10 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.value.WritableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -82,6 +91,7 @@ import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
@@ -109,7 +119,11 @@ public class GameManager extends Group {
     private static int finalValueToWin = 0;
     private static final int[] valuesToWin = {2048, 4096, 8192};
     public static final int CELL_SIZE = 128;
+    public static final int MIN_GRID_SIZE = 3;
+    public static final int MAX_GRID_SIZE = 16;
     private static final int DEFAULT_GRID_SIZE = 4;
+    private static final int MIN_AI_GRID_SIZE = 3; // searched by the player
+    private static final int MAX_AI_GRID_SIZE = 8;
     private static final int BORDER_WIDTH = (14 + 2) / 2;
     // grid_width=4*cell_size + 2*cell_stroke/2d (14px css)+2*grid_stroke/2d (2 px css)
     private static final int GRID_WIDTH
@@ -118,10 +132,9 @@ public class GameManager extends Group {
 
     private volatile boolean movingTiles = false;
     private final int gridSize;
-    private final List<Integer> traversalX;
-    private final List<Integer> traversalY;
     private final List<Location> locations = new ArrayList<>();
-    private final Map<Location, Tile> gameGrid = new HashMap<>();
+    private final Tile[] gameGrid; // tiles by cell index, y * gridSize + x
+    private GameEngine engine = null;
     //private Map<Location, Tile> gameGrid = null;
     private final BooleanProperty gameWonProperty
             = new SimpleBooleanProperty(false);
@@ -133,8 +146,16 @@ public class GameManager extends Group {
             = new SimpleIntegerProperty(0);
     private final Set<Tile> mergedToBeRemoved
             = new HashSet<>();
+    private final Deque<Tile> tilePool = new ArrayDeque<>(); // unused tiles
+    private boolean singleTimer = false; // animate with the tileAnimator
+    private TileAnimator tileAnimator = null;
     private final ParallelTransition parallelTransition
             = new ParallelTransition();
+    private final List<Timeline> moveTimelines // in the parallelTransition
+            = new ArrayList<>();
+    private final List<Timeline> growTimelines // of the newly added tiles
+            = new ArrayList<>();
+    private Runnable moveFinished = null; // action of the parallelTransition
     private final BooleanProperty layerOnProperty
             = new SimpleBooleanProperty(false);
 
@@ -155,6 +176,7 @@ public class GameManager extends Group {
     private final CheckBox aiCheckBox = new CheckBox("Need help?");
     private Game2048 game2048 = null;
     private GiocatoreAutomatico giocatoreAutomatico = null;
+    private GiocatoreAutomatico bot = null; // kept when the AI is disabled
     private VBox controls = null;
     private HBox speedControls = null;
     private Text speedControlsLabel = null;
@@ -162,13 +184,68 @@ public class GameManager extends Group {
     private Lock lock = new ReentrantLock();
     private boolean stopAtWinningScore = true;
     private boolean safemode = true;
-    private Griglia griglia = new QuickGrid();
+    private ArrayGrid griglia = new ArrayGrid();
     private int currentStyle = 3;
     private final int DEFAULT_DEPTH = 6;
     private final int MAX_DEPTH = 7;
-    private final Location PLAYING_STYLE_LOCATION = new Location(-1, -1);
-    private final Location DEPTH_LOCATION = new Location(-1, -2);
-    private boolean autoMoving = false;
+    private final Location PLAYING_STYLE_LOCATION = Location.of(-1, -1);
+    private final Location DEPTH_LOCATION = Location.of(-1, -2);
+    private final Location TIME_BUDGET_LOCATION = Location.of(-1, -3);
+    private final int[] TIME_BUDGETS = {50, 100, 200, 500, 1000}; // ms
+    private int currentTimeBudget = 0; // 0 for a fixed depth search
+    private boolean autoMoving = false; // a search is running
+    private int gridVersion = 0; // changed by each move and new game
+    private final ThreadPoolExecutor aiExecutor // single thread, purgeable
+            = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "AI search");
+                t.setDaemon(true);
+                return t;
+            });
+    private final SessionManager sessionManager;
+    private final MoveJournal journal;
+    private final ExecutorService sessionExecutor
+            = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Session writer");
+                t.setDaemon(true);
+                return t;
+            });
+    private final ObservableList<String> sessionSlots
+            = FXCollections.observableArrayList(); // saved slots, FX thread
+    private boolean pondering = false; // search the replies during animations
+    private final Map<Integer, PonderedReply> ponderedReplies = new HashMap<>();
+    private PonderedReply spawnReply = null; // reply for the last random tile
+    private final int[] TURBO_FRAME_RATES = {30, 60}; // frames per second
+    private int turboFrameRate = 0; // 0 when the turbo mode is off
+    private boolean boardDirty = false; // the board does not show the engine
+    private BoardCanvas boardCanvas = null; // null when drawing the tiles
+    private boolean winningTileMerged = false;
+    private final GameEngine.MoveListener turboListener
+            = new GameEngine.MoveListener() {
+        @Override
+        public void tileMoved(Location from, Location to) {
+        }
+
+        @Override
+        public void tilesMerged(Location from, Location to, int value) {
+            if ((value == finalValueToWin) && stopAtWinningScore) {
+                winningTileMerged = true;
+            }
+        }
+    };
+    private final AnimationTimer boardRenderer = new AnimationTimer() {
+        private long lastFrame = 0;
+
+        @Override
+        public void handle(long now) {
+            if (!boardDirty || (turboFrameRate > 0
+                    && now - lastFrame < 1_000_000_000L / turboFrameRate)) {
+                return;
+            }
+            lastFrame = now;
+            drawBoard();
+        }
+    };
 
     /**
      * This is the constructor for the class.
@@ -180,28 +257,59 @@ public class GameManager extends Group {
     }
 
     /**
-     * This is the constructor for the class.
+     * This is the constructor for the class. The board is drawn on a canvas
+     * if the grid size is not the default one.
      *
      * @param gridSize Size for the game grid.
      * @param game A reference to the invoker Game2048 object.
      */
     public GameManager(int gridSize, Game2048 game) {
+        this(gridSize, gridSize != DEFAULT_GRID_SIZE, game);
+    }
+
+    /**
+     * This is the constructor for the class.
+     *
+     * @param gridSize Size for the game grid.
+     * @param canvas <code>true</code> to draw the board on a single canvas,
+     * <code>false</code> to draw a node for each tile (only for the default
+     * grid size).
+     * @param game A reference to the invoker Game2048 object.
+     * @throws IllegalArgumentException if the grid size is not between
+     * MIN_GRID_SIZE and MAX_GRID_SIZE.
+     */
+    public GameManager(int gridSize, boolean canvas, Game2048 game) {
+        if (gridSize < MIN_GRID_SIZE || gridSize > MAX_GRID_SIZE) {
+            throw new IllegalArgumentException("Invalid grid size " + gridSize);
+        }
         this.game2048 = game;
         //this.gameGrid = new HashMap<>();
         this.gridSize = gridSize;
-        this.traversalX = IntStream.range(0, gridSize)
-                .boxed()
-                .collect(Collectors.toList());
-        this.traversalY = IntStream.range(0, gridSize)
-                .boxed()
-                .collect(Collectors.toList());
+        this.engine = new GameEngine(gridSize);
+        this.sessionManager = new SessionManager(gridSize);
+        this.journal = new MoveJournal(gridSize, sessionExecutor);
+        sessionExecutor.execute(this::refreshSlots);
+        this.gameGrid = new Tile[gridSize * gridSize];
+        this.tileAnimator = new TileAnimator(2 * gridSize * gridSize);
+        if (canvas || gridSize != DEFAULT_GRID_SIZE) {
+            this.boardCanvas = new BoardCanvas(gridSize,
+                    CELL_SIZE * DEFAULT_GRID_SIZE);
+            boardRenderer.start();
+        }
 
         createControls();
         createScore();
         createGrid();
         initGameProperties();
 
-        initializeGrid();
+        // a new game would overwrite the journal before its game is rebuilt
+        SessionManager.Session recovered = journal.recover();
+        if (recovered != null) {
+            log.info("Recovering the game from the journal");
+            applySession(recovered);
+        } else {
+            initializeGrid();
+        }
 
         this.setManaged(false);
     }
@@ -217,108 +325,182 @@ public class GameManager extends Group {
             return;
         }
 
+        if (boardCanvas != null) {
+            instantMove(direction);
+            return;
+        }
+
         synchronized (gameGrid) {
             if (movingTiles) {
                 return;
             }
         }
 
-        gameMovePoints.set(0);
-
-        Collections.sort(traversalX,
-                direction.getX() == 1
-                ? Collections.reverseOrder() : Integer::compareTo);
-        Collections.sort(traversalY,
-                direction.getY() == 1
-                ? Collections.reverseOrder() : Integer::compareTo);
-        final int tilesWereMoved = traverseGrid((int x, int y) -> {
-            Location thisloc = new Location(x, y);
-            Tile tile = gameGrid.get(thisloc);
-            if (tile == null) {
-                return 0;
-            }
+        completeAnimations(); // the newly added tile, if still animating
+        flushBoard();
+        gridVersion++;
+        cancelPondering();
+        final boolean tilesWereMoved = engine.move(direction,
+                new GameEngine.MoveListener() {
+            @Override
+            public void tileMoved(Location from, Location to) {
+                Tile tile = gameGrid[index(from)];
+                animateMove(tile, to);
+
+                gameGrid[index(to)] = tile;
+                gameGrid[index(from)] = null;
 
-            Location farthestLocation = findFarthestLocation(thisloc, direction); // farthest available location
-            Location nextLocation = farthestLocation.offset(direction); // calculates to a possible merge
-            Tile tileToBeMerged = nextLocation
-                    .isValidFor(gridSize) ? gameGrid.get(nextLocation) : null;
+                tile.setLocation(to);
+            }
 
-            if (tileToBeMerged != null
-                    && tileToBeMerged.getValue().equals(tile.getValue())
-                    && !tileToBeMerged.isMerged()) {
+            @Override
+            public void tilesMerged(Location from, Location to, int value) {
+                Tile tile = gameGrid[index(from)];
+                Tile tileToBeMerged = gameGrid[index(to)];
                 tileToBeMerged.merge(tile);
 
-                gameGrid.put(nextLocation, tileToBeMerged);
-                gameGrid.replace(tile.getLocation(), null);
+                gameGrid[index(from)] = null;
 
-                parallelTransition.getChildren().add(animateExistingTile(
-                        tile, tileToBeMerged.getLocation()));
-                parallelTransition.getChildren().add(hideTileToBeMerged(tile));
+                animateMove(tile, tileToBeMerged.getLocation());
+                animateHide(tile);
                 mergedToBeRemoved.add(tile);
 
-                gameMovePoints.set(gameMovePoints.get()
-                        + tileToBeMerged.getValue());
-                gameScoreProperty.set(gameScoreProperty.get()
-                        + tileToBeMerged.getValue());
-
-                if ((tileToBeMerged.getValue() == finalValueToWin)
-                        && stopAtWinningScore) {
+                if ((value == finalValueToWin) && stopAtWinningScore) {
                     gameWonProperty.set(true);
                 }
-                return 1;
-            } else if (farthestLocation.equals(tile.getLocation()) == false) {
-                parallelTransition.getChildren()
-                        .add(animateExistingTile(tile, farthestLocation));
-
-                gameGrid.put(farthestLocation, tile);
-                gameGrid.replace(tile.getLocation(), null);
-
-                tile.setLocation(farthestLocation);
-
-                return 1;
             }
-
-            return 0;
         });
 
+        gameMovePoints.set(engine.getMovePoints());
+        gameScoreProperty.set(engine.getScore());
+
         if (gameMovePoints.get() > 0) {
             animateScore(gameMovePoints.getValue().toString()).play();
         }
 
-        parallelTransition.setOnFinished(e -> {
+        if (tilesWereMoved) {
+            ponder();
+        }
+
+        Runnable onMoveFinished = () -> {
             synchronized (gameGrid) {
                 movingTiles = false;
             }
 
             gridGroup.getChildren().removeAll(mergedToBeRemoved);
+            tilePool.addAll(mergedToBeRemoved);
 
             // game is over if there is no more moves
-            Location randomAvailableLocation = findRandomAvailableLocation();
-            if (randomAvailableLocation == null && !mergeMovementsAvailable()) {
+            if (tilesWereMoved) {
+                Location randomLocation = engine.addRandomTile();
+                journal.record(direction, randomLocation, engine);
+                keepPonderedReply(randomLocation);
+                addAndAnimateRandomTile(randomLocation);
+            } else if (engine.isGameOver()) {
                 gameOverProperty.set(true);
-            } else if (randomAvailableLocation != null && tilesWereMoved > 0) {
-                addAndAnimateRandomTile(randomAvailableLocation);
             }
 
             mergedToBeRemoved.clear();
 
             // reset merged after each movement
-            gameGrid.values()
-                    .stream()
-                    .filter(Objects::nonNull)
-                    .forEach(Tile::clearMerge);
-        });
+            for (Tile tile : gameGrid) {
+                if (tile != null) {
+                    tile.clearMerge();
+                }
+            }
+        };
 
         synchronized (gameGrid) {
             movingTiles = true;
         }
 
-        parallelTransition.play();
-        parallelTransition.getChildren().clear();
+        if (singleTimer) {
+            tileAnimator.play(onMoveFinished);
+        } else {
+            moveFinished = onMoveFinished;
+            parallelTransition.setOnFinished(e -> finishMoveTimelines());
+            parallelTransition.play();
+            parallelTransition.getChildren().clear();
+        }
     }
 
     /**
-     * This method asks the GiocatoreAutomatico for an automatic move.
+     * End the Timelines of the move played by the parallelTransition, and
+     * run the action of the move.
+     */
+    private void finishMoveTimelines() {
+        Runnable action = moveFinished;
+        moveFinished = null;
+        moveTimelines.clear();
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Bring all the running tile animations to their end, running their
+     * actions, so no animation is still changing a tile when it is recycled
+     * or when the engine is moved again. The action of a move adds the new
+     * tile, whose animation is completed too.
+     */
+    private void completeAnimations() {
+        do {
+            if (moveFinished != null) {
+                parallelTransition.stop();
+                moveTimelines.forEach(GameManager::completeTimeline);
+                finishMoveTimelines();
+            }
+            tileAnimator.complete();
+            List<Timeline> growing = new ArrayList<>(growTimelines);
+            growTimelines.clear();
+            growing.forEach(GameManager::completeTimeline);
+        } while (moveFinished != null || tileAnimator.isPlaying());
+    }
+
+    /**
+     * Stop all the running tile animations, leaving the tiles as they are,
+     * without running their actions.
+     */
+    private void cancelAnimations() {
+        parallelTransition.stop();
+        moveTimelines.clear();
+        moveFinished = null;
+        growTimelines.forEach(Timeline::stop);
+        growTimelines.clear();
+        tileAnimator.cancel();
+        synchronized (gameGrid) {
+            movingTiles = false;
+        }
+    }
+
+    /**
+     * Stop a Timeline, set its properties to their final values and run its
+     * action.
+     *
+     * @param timeline Timeline to be completed.
+     */
+    @SuppressWarnings("unchecked")
+    private static void completeTimeline(Timeline timeline) {
+        timeline.stop();
+        for (KeyFrame frame : timeline.getKeyFrames()) {
+            for (KeyValue value : frame.getValues()) {
+                ((WritableValue<Object>) value.getTarget())
+                        .setValue(value.getEndValue());
+            }
+        }
+        if (timeline.getOnFinished() != null) {
+            timeline.getOnFinished().handle(null);
+        }
+    }
+
+    /**
+     * This method asks the GiocatoreAutomatico for an automatic move. The
+     * search runs on the AI worker thread, on a copy of the grid, so the
+     * window stays responsive; the move is then played on the JavaFX thread,
+     * unless the grid has been changed in the meantime. Human moves are
+     * ignored until the search ends. If the reply for the current grid has
+     * already been searched during the animation of the previous move, the
+     * search is skipped.
      */
     public void autoMove() {
 
@@ -331,138 +513,342 @@ public class GameManager extends Group {
                 return;
             }
         }
-        
-        synchronized (giocatoreAutomatico) { // avoid conflicts with human moves
-            autoMoving = true;
+
+        if (autoMoving || giocatoreAutomatico == null) {
+            return; // a search is already running
         }
+        autoMoving = true; // avoid conflicts with human moves
 
         log.info("Doing an auto move.");
-        Direction move = null;
-        switch (giocatoreAutomatico.prossimaMossa(this.creaGriglia())) {
-            case 0:
-                move = Direction.UP;
-                break;
-            case 1:
-                move = Direction.RIGHT;
-                break;
-            case 2:
-                move = Direction.DOWN;
-                break;
-            case 3:
-                move = Direction.LEFT;
-                break;
-            default:
-                throw new InvalidMoveException(
-                        "Invalid move from the GiocatoreAutomatico");
+        creaGriglia();
+        final ArrayGrid grid = new ArrayGrid(griglia);
+        final GiocatoreAutomatico player = giocatoreAutomatico;
+        final int version = gridVersion;
+        final PonderedReply pondered = takeSpawnReply(grid, player);
+        aiExecutor.execute(() -> {
+            int result;
+            try {
+                result = reply(pondered, player, grid);
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Error from the GiocatoreAutomatico", e);
+                result = -1;
+            }
+            final int move = result;
+            Platform.runLater(() -> {
+                autoMoving = false;
+                if (move < 0) {
+                    return;
+                }
+                if (version != gridVersion || player != giocatoreAutomatico) {
+                    log.info("Grid changed during the search, move discarded.");
+                    return;
+                }
+                if (isTurbo()) {
+                    instantMove(directionFor(move));
+                } else {
+                    move(directionFor(move));
+                }
+            });
+        });
+    }
+
+    /**
+     * Check if the moves of the GiocatoreAutomatico are played in turbo mode.
+     *
+     * @return <code>true</code> if the turbo mode is on and the game is
+     * moving automatically, <code>false</code> otherwise.
+     */
+    private boolean isTurbo() {
+        return turboFrameRate > 0 && ai && autoAI;
+    }
+
+    /**
+     * This method plays a move without animations, in turbo mode or on the
+     * canvas: the move and the random tile are applied to the engine only,
+     * and in turbo mode the next automatic move is asked at once. The board
+     * is redrawn by the board renderer at the next frame, or at most
+     * turboFrameRate times per second in turbo mode.
+     *
+     * @param direction Desired direction for the move.
+     */
+    private void instantMove(Direction direction) {
+        if (layerOnProperty.get()) {
+            return;
         }
-        
-        synchronized (giocatoreAutomatico) {
-            autoMoving = false;
+
+        completeAnimations(); // a move started before the turbo mode
+        gridVersion++;
+        cancelPondering();
+        winningTileMerged = false;
+        if (engine.move(direction, turboListener)) {
+            journal.record(direction, engine.addRandomTile(), engine);
+            boardDirty = true;
+        }
+
+        if (winningTileMerged) {
+            drawBoard();
+            gameWonProperty.set(true);
+        } else if (engine.isGameOver()) {
+            drawBoard();
+            gameOverProperty.set(true);
+        } else if (isTurbo()) {
+            autoMove();
         }
-        
-        move(move);
     }
 
     /**
-     * This method return a Griglia object representing the current position on
-     * the game grid. Attention: this method adjourns and returns always the
-     * same object, wich is shared with other methods. This is the behaviour
-     * because other methods need to modify the grid under some circumstances.
+     * Set the turbo mode. In turbo mode the automatic moves are played at the
+     * speed of the GiocatoreAutomatico, and the board is redrawn at a capped
+     * rate instead of animating each move.
      *
-     * @return An object rapresenting the current game grid.
+     * @param frameRate Maximum number of redraws per second, or 0 to turn
+     * the turbo mode off.
      */
-    public Griglia creaGriglia() {
-        //Griglia griglia = new QuickGrid();
-        for (int i = 0; i < gridSize; i++) {
-            for (int j = 0; j < gridSize; j++) {
-                Location l = new Location(i, j);
-                if (this.gameGrid.containsKey(l)
-                        && this.gameGrid.get(l) != null) {
-                    griglia.put(l, this.gameGrid.get(l).getValue());
-                } else {
-                    griglia.put(l, -1);
+    private void setTurboFrameRate(int frameRate) {
+        turboFrameRate = frameRate;
+        if (frameRate > 0 || boardCanvas != null) {
+            boardRenderer.start();
+        } else {
+            boardRenderer.stop();
+            flushBoard();
+        }
+    }
+
+    /**
+     * Redraw the tiles if they do not show the current engine grid.
+     */
+    private void flushBoard() {
+        if (boardDirty) {
+            drawBoard();
+        }
+    }
+
+    /**
+     * Update the board and the score to the engine grid. A tile is replaced
+     * only if the value of its cell has changed.
+     */
+    private void drawBoard() {
+        completeAnimations();
+        boardDirty = false;
+        if (boardCanvas != null) {
+            boardCanvas.paint(engine);
+            gameScoreProperty.set(engine.getScore());
+            return;
+        }
+        for (int i = 0; i < gameGrid.length; i++) {
+            Location location = Location.of(i % gridSize, i / gridSize);
+            int value = engine.getValue(location);
+            Tile tile = gameGrid[i];
+            if (tile != null && tile.getValue() == value) {
+                continue;
+            }
+            if (tile != null) {
+                gridGroup.getChildren().remove(tile);
+                tilePool.push(tile);
+                gameGrid[i] = null;
+            }
+            if (value > 0) {
+                tile = obtainTile(value);
+                tile.setLocation(location);
+                tile.setLayoutX(location.getLayoutX(CELL_SIZE)
+                        - (tile.getMinWidth() / 2));
+                tile.setLayoutY(location.getLayoutY(CELL_SIZE)
+                        - (tile.getMinHeight() / 2));
+                gameGrid[i] = tile;
+                gridGroup.getChildren().add(tile);
+            }
+        }
+        gameScoreProperty.set(engine.getScore());
+    }
+
+    /**
+     * This method searches in background the reply of the GiocatoreAutomatico
+     * for each random tile which can be added after the move just done: a 2
+     * or a 4 in each free cell. The searches run on the AI worker thread while
+     * the tiles are sliding, the 2s first since they are more likely; when
+     * the random tile is added, the searches for the other tiles are
+     * cancelled. Pondering is done only in auto move mode, and only for the
+     * search styles (minimax and expectimax, or the default style of the
+     * player when no style is set): the random and blind styles keep a state
+     * across the calls, which the searches for the tiles not added would
+     * change.
+     */
+    private void ponder() {
+        if (!pondering || !ai || !autoAI || giocatoreAutomatico == null) {
+            return;
+        }
+        Integer style = griglia.get(PLAYING_STYLE_LOCATION);
+        if (style != null && style != 3 && style != 4) {
+            return;
+        }
+        final GiocatoreAutomatico player = giocatoreAutomatico;
+        ArrayGrid base = engine.fill(new ArrayGrid(griglia));
+        for (int value = 2; value <= 4; value += 2) {
+            for (int i = 0; i < gridSize * gridSize; i++) {
+                if (base.getCell(i) != 0) {
+                    continue;
                 }
+                final ArrayGrid grid = new ArrayGrid(base);
+                grid.setCell(i, value);
+                // the player gets a copy, since it could write in the grid
+                final ArrayGrid copy = new ArrayGrid(grid);
+                Future<Integer> move = aiExecutor.submit(
+                        () -> player.prossimaMossa(copy));
+                ponderedReplies.put(ponderKey(i, value),
+                        new PonderedReply(grid, player, move));
             }
         }
-        log.log(Level.INFO, "Grid: \n{0}", griglia.toString());
-        return griglia;
     }
 
     /**
-     * Search for the farthest location from the selected location along the
-     * desired direction.
+     * Keep the pondered reply for the random tile just added, and cancel the
+     * searches for the other tiles. The search running is interrupted, which
+     * aborts it, and the cancelled searches are removed from the queue of the
+     * AI worker, so the search for the tile added starts at once.
      *
-     * @param location Desired location to start from.
-     * @param direction Desired direction.
-     * @return The farthest location from the desired location along the
-     * selected direction.
+     * @param location Location of the random tile, or null.
      */
-    private Location findFarthestLocation(
-            Location location,
-            Direction direction) {
-        Location farthest;
+    private void keepPonderedReply(Location location) {
+        if (location != null) {
+            spawnReply = ponderedReplies.remove(ponderKey(
+                    index(location), engine.getValue(location)));
+        }
+        for (PonderedReply r : ponderedReplies.values()) {
+            r.move.cancel(true);
+        }
+        ponderedReplies.clear();
+        aiExecutor.purge();
+    }
 
-        do {
-            farthest = location;
-            location = farthest.offset(direction);
-        } while (location.isValidFor(gridSize) && gameGrid.get(location) == null);
+    /**
+     * Return the pondered reply for the grid, if it has been searched on the
+     * same grid (settings included) by the same player. The reply can be used
+     * only once.
+     *
+     * @param grid The current grid.
+     * @param player The current player.
+     * @return The pondered reply, or null.
+     */
+    private PonderedReply takeSpawnReply(ArrayGrid grid,
+            GiocatoreAutomatico player) {
+        PonderedReply r = spawnReply;
+        spawnReply = null;
+        if (r == null || r.player != player || r.move.isCancelled()
+                || !r.grid.equals(grid)) {
+            return null;
+        }
+        return r;
+    }
 
-        return farthest;
+    /**
+     * Cancel all the pondered replies.
+     */
+    private void cancelPondering() {
+        keepPonderedReply(null);
+        if (spawnReply != null) {
+            spawnReply.move.cancel(true);
+            spawnReply = null;
+            aiExecutor.purge();
+        }
     }
 
     /**
-     * This method transverses the grid.
+     * Return the reply of the GiocatoreAutomatico. This method runs on the AI
+     * worker thread: since the pondering searches are submitted to the same
+     * thread before the auto move, the pondered reply is already available.
      *
-     * @param func
-     * @return
+     * @param pondered The pondered reply, or null to search the move.
+     * @param player The GiocatoreAutomatico.
+     * @param grid The grid for the search.
+     * @return The move (0=ALTO; 1=DX; 2=BASSO; 3=SX).
      */
-    private int traverseGrid(IntBinaryOperator func) {
-        AtomicInteger at = new AtomicInteger();
-        traversalX.forEach(t_x -> {
-            traversalY.forEach(t_y -> {
-                at.addAndGet(func.applyAsInt(t_x, t_y));
-            });
-        });
+    private int reply(PonderedReply pondered, GiocatoreAutomatico player,
+            ArrayGrid grid) {
+        if (pondered != null) {
+            try {
+                log.info("Using the pondered reply.");
+                return pondered.move.get();
+            } catch (InterruptedException | ExecutionException
+                    | CancellationException e) {
+                log.log(Level.WARNING, "Pondered reply not available", e);
+            }
+        }
+        return player.prossimaMossa(grid);
+    }
+
+    /**
+     * Return the key of a pondered reply.
+     *
+     * @param index Index of the cell of the random tile.
+     * @param value Value of the random tile.
+     * @return The key.
+     */
+    private static int ponderKey(int index, int value) {
+        return 2 * index + (value == 4 ? 1 : 0);
+    }
+
+    /**
+     * This class holds a reply searched in background for a possible random
+     * tile, with the grid and the player used for the search.
+     */
+    private static final class PonderedReply {
+
+        private final ArrayGrid grid;
+        private final GiocatoreAutomatico player;
+        private final Future<Integer> move;
 
-        return at.get();
+        PonderedReply(ArrayGrid grid, GiocatoreAutomatico player,
+                Future<Integer> move) {
+            this.grid = grid;
+            this.player = player;
+            this.move = move;
+        }
     }
 
     /**
-     * This method verifies if merging tiles movements are avaible in the
-     * current position.
+     * Return the direction corresponding to a move of the GiocatoreAutomatico.
      *
-     * @return <code>true</code> if merge movements are avaible,
-     * <code>false</code> otherwise.
+     * @param move 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return The direction for the move.
      */
-    private boolean mergeMovementsAvailable() {
-        final SimpleBooleanProperty foundMergeableTile
-                = new SimpleBooleanProperty(false);
-
-        Stream.of(Direction.UP, Direction.LEFT).parallel().forEach(
-                direction -> {
-                    int mergeableFound = traverseGrid((x, y) -> {
-                        Location thisloc = new Location(x, y);
-                        Tile tile = gameGrid.get(thisloc);
-
-                        if (tile != null) {
-                            Location nextLocation = thisloc.offset(direction); // calculates to a possible merge
-                            if (nextLocation.isValidFor(gridSize)) {
-                                Tile tileToBeMerged = gameGrid.get(nextLocation);
-                                if (tile.isMergeable(tileToBeMerged)) {
-                                    return 1;
-                                }
-                            }
-                        }
-
-                        return 0;
-                    });
+    private Direction directionFor(int move) {
+        switch (move) {
+            case 0:
+                return Direction.UP;
+            case 1:
+                return Direction.RIGHT;
+            case 2:
+                return Direction.DOWN;
+            case 3:
+                return Direction.LEFT;
+            default:
+                throw new InvalidMoveException(
+                        "Invalid move from the GiocatoreAutomatico");
+        }
+    }
 
-                    if (mergeableFound > 0) {
-                        foundMergeableTile.set(true);
-                    }
-                });
+    /**
+     * This method return a Griglia object representing the current position on
+     * the game grid. Attention: this method adjourns and returns always the
+     * same object, wich is shared with other methods. This is the behaviour
+     * because other methods need to modify the grid under some circumstances.
+     *
+     * @return An object rapresenting the current game grid.
+     */
+    public Griglia creaGriglia() {
+        engine.fill(griglia);
+        log.log(Level.INFO, "Grid: \n{0}", griglia.toString());
+        return griglia;
+    }
 
-        return foundMergeableTile.getValue();
+    /**
+     * Return the index of a location in the gameGrid array.
+     *
+     * @param location The location.
+     * @return Index of the cell.
+     */
+    private int index(Location location) {
+        return location.getY() * gridSize + location.getX();
     }
 
     /**
@@ -504,6 +890,7 @@ public class GameManager extends Group {
         aiCheckBox.setOnAction((e) -> {
             toggleAI();
         });
+        aiCheckBox.setDisable(!isAISupported());
 
         controls = new VBox(5);
 
@@ -535,6 +922,34 @@ public class GameManager extends Group {
             log.info("Restoring");
             restoreSession();
         });
+        MenuItem saveSlot = new MenuItem("Save in slot...");
+        saveSlot.setOnAction((e) -> {
+            TextInputDialog dialog = new TextInputDialog();
+            dialog.setTitle("Save in slot");
+            dialog.setHeaderText(null);
+            dialog.setContentText("Slot name:");
+            dialog.showAndWait().map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .ifPresent(name -> {
+                        log.info("Saving in the slot " + name);
+                        saveSession(name);
+                    });
+        });
+        Menu restoreSlot = new Menu("Restore slot");
+        restoreSlot.setDisable(true);
+        sessionSlots.addListener((ListChangeListener<String>) (c) -> {
+            restoreSlot.getItems().clear();
+            for (String name : sessionSlots) {
+                MenuItem item = new MenuItem(name);
+                item.setMnemonicParsing(false);
+                item.setOnAction((ae) -> {
+                    log.info("Restoring the slot " + name);
+                    restoreSession(name);
+                });
+                restoreSlot.getItems().add(item);
+            }
+            restoreSlot.setDisable(sessionSlots.isEmpty());
+        });
         MenuItem restart = new MenuItem("Restart");
         restart.setOnAction((e) -> {
             log.info("Restarting");
@@ -585,6 +1000,47 @@ public class GameManager extends Group {
             }
         }
 
+        Menu timeMenu = new Menu("Time per move");
+        timeMenu.setDisable(true);
+        ToggleGroup timeGroup = new ToggleGroup();
+        RadioMenuItem noTimeBudget = new RadioMenuItem("Off");
+        noTimeBudget.setToggleGroup(timeGroup);
+        noTimeBudget.setOnAction((ae) -> {
+            currentTimeBudget = 0;
+            griglia.remove(TIME_BUDGET_LOCATION);
+        });
+        noTimeBudget.setSelected(true);
+        timeMenu.getItems().add(noTimeBudget);
+        for (int t : TIME_BUDGETS) {
+            RadioMenuItem r = new RadioMenuItem(t + " ms");
+            r.setToggleGroup(timeGroup);
+            r.setOnAction((ae) -> {
+                currentTimeBudget = t;
+                if (!safemode) {
+                    griglia.put(TIME_BUDGET_LOCATION, t); // overrides depth
+                }
+            });
+            timeMenu.getItems().add(r);
+        }
+
+        Menu turboMenu = new Menu("Turbo mode");
+        ToggleGroup turboGroup = new ToggleGroup();
+        RadioMenuItem noTurbo = new RadioMenuItem("Off");
+        noTurbo.setToggleGroup(turboGroup);
+        noTurbo.setOnAction((ae) -> {
+            setTurboFrameRate(0);
+        });
+        noTurbo.setSelected(true);
+        turboMenu.getItems().add(noTurbo);
+        for (int f : TURBO_FRAME_RATES) {
+            RadioMenuItem r = new RadioMenuItem(f + " fps");
+            r.setToggleGroup(turboGroup);
+            r.setOnAction((ae) -> {
+                setTurboFrameRate(f);
+            });
+            turboMenu.getItems().add(r);
+        }
+
         Menu playingStyle = new Menu("Playing style");
         playingStyle.setDisable(true);
         ToggleGroup playingStyleGroup = new ToggleGroup();
@@ -596,6 +1052,7 @@ public class GameManager extends Group {
                 griglia.put(PLAYING_STYLE_LOCATION, currentStyle);
             }
             depthMenu.setDisable(true);
+            timeMenu.setDisable(true);
         });
         RadioMenuItem blindStyle = new RadioMenuItem("Blind");
         blindStyle.setToggleGroup(playingStyleGroup);
@@ -605,6 +1062,7 @@ public class GameManager extends Group {
                 griglia.put(PLAYING_STYLE_LOCATION, currentStyle);
             }
             depthMenu.setDisable(true);
+            timeMenu.setDisable(true);
         });
         RadioMenuItem minimaxStyle = new RadioMenuItem("Minimax");
         minimaxStyle.setToggleGroup(playingStyleGroup);
@@ -614,30 +1072,61 @@ public class GameManager extends Group {
                 griglia.put(PLAYING_STYLE_LOCATION, currentStyle);
             }
             depthMenu.setDisable(false);
+            timeMenu.setDisable(false);
+        });
+        RadioMenuItem expectimaxStyle = new RadioMenuItem("Expectimax");
+        expectimaxStyle.setToggleGroup(playingStyleGroup);
+        expectimaxStyle.setOnAction((ae) -> {
+            currentStyle = 4;
+            if (!safemode) {
+                griglia.put(PLAYING_STYLE_LOCATION, currentStyle);
+            }
+            depthMenu.setDisable(false);
+            timeMenu.setDisable(false);
         });
         minimaxStyle.setSelected(true);
 
         playingStyle.getItems().addAll(
                 randomStyle,
                 blindStyle,
-                minimaxStyle);
+                minimaxStyle,
+                expectimaxStyle);
 
         CheckMenuItem advancedOptionsCB = new CheckMenuItem("Advanced options");
         advancedOptionsCB.setOnAction((ae) -> {
             if (safemode) {
                 playingStyle.setDisable(false);
                 depthMenu.setDisable(false);
+                timeMenu.setDisable(false);
                 griglia.put(PLAYING_STYLE_LOCATION, currentStyle);
+                if (currentTimeBudget > 0) {
+                    griglia.put(TIME_BUDGET_LOCATION, currentTimeBudget);
+                }
                 safemode = false;
             } else {
                 playingStyle.setDisable(true);
                 depthMenu.setDisable(true);
+                timeMenu.setDisable(true);
                 griglia.remove(PLAYING_STYLE_LOCATION);
                 griglia.remove(DEPTH_LOCATION);
+                griglia.remove(TIME_BUDGET_LOCATION);
                 safemode = true;
             }
         });
         advancedOptionsCB.setSelected(false);
+        CheckMenuItem ponderCB = new CheckMenuItem("Ponder during animations");
+        ponderCB.setOnAction((ae) -> {
+            pondering = ponderCB.isSelected();
+            if (!pondering) {
+                cancelPondering();
+            }
+        });
+        ponderCB.setSelected(false);
+        CheckMenuItem singleTimerCB = new CheckMenuItem("Single animation timer");
+        singleTimerCB.setOnAction((ae) -> {
+            singleTimer = singleTimerCB.isSelected();
+        });
+        singleTimerCB.setSelected(false);
         stopAtWin.setSelected(true); // default value
         final ToggleGroup valuesToWinGroup = new ToggleGroup();
         Menu valueToWin = new Menu("Value to win");
@@ -665,12 +1154,18 @@ public class GameManager extends Group {
                 stopAtWin,
                 playingStyle,
                 depthMenu,
+                timeMenu,
+                ponderCB,
+                turboMenu,
+                singleTimerCB,
                 advancedOptionsCB);
 
         // add all to main menu
         gameMenu.getItems().addAll(
                 save,
                 restore,
+                saveSlot,
+                restoreSlot,
                 restart,
                 //credits, //TODO
                 //help,
@@ -687,14 +1182,23 @@ public class GameManager extends Group {
      * This method commutes (enabling or disabling) the IA. If the IA is enabled
      * the human player cannot move the board, but he can invoke a move from the
      * automatic player, or he can enable the computer to move in automatic.
+     * The player is created the first time and reused when the IA is enabled
+     * again, together with its search tables. The IA cannot be enabled on the
+     * grid sizes not supported by the automatic player.
      */
     public void toggleAI() {
+        if (!ai && !isAISupported()) {
+            log.info("No automatic player for the grid size " + gridSize);
+            return;
+        }
         if (!ai) {
             log.info("Creating bot.");
             //giocatoreAutomatico = new MyGiocatoreAutomatico(creaGriglia());
             try {
-                giocatoreAutomatico = GiocatoreAutomatico
-                        .getGiocatoreAutomatico();
+                if (bot == null) {
+                    bot = GiocatoreAutomatico.getGiocatoreAutomatico();
+                }
+                giocatoreAutomatico = bot;
             } catch (ClassNotFoundException e) {
                 log.log(Level.SEVERE,
                         "Class MyGiocatoreAutomatico not found!");
@@ -723,6 +1227,15 @@ public class GameManager extends Group {
 
     }
 
+    /**
+     * Check if the automatic player can search the current grid size.
+     *
+     * @return True if the grid size is supported by the automatic player.
+     */
+    public boolean isAISupported() {
+        return gridSize >= MIN_AI_GRID_SIZE && gridSize <= MAX_AI_GRID_SIZE;
+    }
+
     /**
      * This method commutes the automatic moving by the computer. When the
      * automatic moving is enabled, the game asks automatically the
@@ -895,24 +1408,28 @@ public class GameManager extends Group {
     private void createGrid() {
         final double arcSize = CELL_SIZE / 6d;
 
-        IntStream.range(0, gridSize)
-                .mapToObj(i -> IntStream.range(0, gridSize).mapToObj(j -> {
-                    Location loc = new Location(i, j);
-                    locations.add(loc);
-
-                    Rectangle rect2 = new Rectangle(
-                            i * CELL_SIZE,
-                            j * CELL_SIZE,
-                            CELL_SIZE,
-                            CELL_SIZE);
-
-                    rect2.setArcHeight(arcSize);
-                    rect2.setArcWidth(arcSize);
-                    rect2.getStyleClass().add("grid-cell");
-                    return rect2;
-                }))
-                .flatMap(s -> s)
-                .forEach(gridGroup.getChildren()::add);
+        if (boardCanvas != null) {
+            gridGroup.getChildren().add(boardCanvas);
+        } else {
+            IntStream.range(0, gridSize)
+                    .mapToObj(i -> IntStream.range(0, gridSize).mapToObj(j -> {
+                        Location loc = Location.of(i, j);
+                        locations.add(loc);
+
+                        Rectangle rect2 = new Rectangle(
+                                i * CELL_SIZE,
+                                j * CELL_SIZE,
+                                CELL_SIZE,
+                                CELL_SIZE);
+
+                        rect2.setArcHeight(arcSize);
+                        rect2.setArcWidth(arcSize);
+                        rect2.getStyleClass().add("grid-cell");
+                        return rect2;
+                    }))
+                    .flatMap(s -> s)
+                    .forEach(gridGroup.getChildren()::add);
+        }
 
         gridGroup.getStyleClass().add("grid");
         gridGroup.setManaged(false);
@@ -1013,15 +1530,21 @@ public class GameManager extends Group {
         List<Node> collect = gridGroup.getChildren().filtered(
                 c -> c instanceof Tile).stream().collect(Collectors.toList());
         gridGroup.getChildren().removeAll(collect);
-        gameGrid.clear();
+        cancelAnimations();
+        for (Node node : collect) {
+            tilePool.push((Tile) node);
+        }
+        Arrays.fill(gameGrid, null);
+        engine.clear();
+        gridVersion++;
+        cancelPondering();
+        boardDirty = false;
         getChildren().removeAll(hOvrLabel, hOvrButton);
 
         layerOnProperty.set(false);
         gameScoreProperty.set(0);
         gameWonProperty.set(false);
         gameOverProperty.set(false);
-
-        initializeLocationsInGameGrid();
     }
 
     /**
@@ -1039,7 +1562,7 @@ public class GameManager extends Group {
      * Clears the grid and redraws all tiles in the <code>gameGrid</code> object
      */
     private void redrawTilesInGameGrid() {
-        gameGrid.values().stream().filter(Objects::nonNull).forEach(t -> {
+        Arrays.stream(gameGrid).filter(Objects::nonNull).forEach(t -> {
             double layoutX = t.getLocation().getLayoutX(CELL_SIZE)
                     - (t.getMinWidth() / 2);
             double layoutY = t.getLocation().getLayoutY(CELL_SIZE)
@@ -1095,70 +1618,47 @@ public class GameManager extends Group {
         void add(int value, int x, int y);
     }
 
-    /**
-     * Initializes all cells in gameGrid map to null
-     */
-    private void initializeLocationsInGameGrid() {
-        traverseGrid((x, y) -> {
-            Location thisloc = new Location(x, y);
-            gameGrid.put(thisloc, null);
-            return 0;
-        });
-    }
-
     /**
      * This method initializes the game grid.
      */
     private void initializeGrid() {
-        initializeLocationsInGameGrid();
-
-        Tile tile0 = Tile.newRandomTile();
-        newRandomTile = tile0; // pass new tile for the autoplayer
-        List<Location> randomLocs = new ArrayList<>(locations);
-        Collections.shuffle(randomLocs);
-        Iterator<Location> locs = randomLocs.stream().limit(2).iterator();
-        tile0.setLocation(locs.next());
-
-        Tile tile1 = null;
-        if (new Random().nextFloat() <= 0.8) { // gives 80% chance to add a second tile
-            tile1 = Tile.newRandomTile();
-            newRandomTile = tile1; // pass new tile for the autoplayer
-            if (tile1.getValue() == 4 && tile0.getValue() == 4) {
-                tile1 = Tile.newTile(2);
-            }
-            tile1.setLocation(locs.next());
-        }
+        Arrays.fill(gameGrid, null);
 
-        Arrays.asList(tile0, tile1).forEach(t -> {
-            if (t == null) {
-                return;
+        engine.start();
+        journal.start(engine);
+        if (boardCanvas != null) {
+            drawBoard();
+            return;
+        }
+        for (int y = 0; y < gridSize; y++) {
+            for (int x = 0; x < gridSize; x++) {
+                int value = engine.getValue(x, y);
+                if (value > 0) {
+                    Tile tile = obtainTile(value);
+                    tile.setLocation(Location.of(x, y));
+                    gameGrid[index(tile.getLocation())] = tile;
+                    newRandomTile = tile; // pass new tile for the autoplayer
+                }
             }
-            gameGrid.put(t.getLocation(), t);
-        });
+        }
 
         redrawTilesInGameGrid();
     }
 
     /**
-     * Finds a random location or returns null if none exist
+     * Return a tile with the desired value, reusing a tile removed from the
+     * grid if available.
      *
-     * @return a random location or <code>null</code> if there are no more
-     * locations available
+     * @param value Desired value.
+     * @return A tile, not placed in the grid.
      */
-    private Location findRandomAvailableLocation() {
-        List<Location> availableLocations = locations
-                .stream()
-                .filter(l -> gameGrid.get(l) == null)
-                .collect(Collectors.toList());
-
-        if (availableLocations.isEmpty()) {
-            return null;
+    private Tile obtainTile(int value) {
+        Tile tile = tilePool.poll();
+        if (tile == null) {
+            return Tile.newTile(value);
         }
-
-        Collections.shuffle(availableLocations);
-        Location randomLocation = availableLocations.get(new Random()
-                .nextInt(availableLocations.size()));
-        return randomLocation;
+        tile.recycle(value);
+        return tile;
     }
 
     /**
@@ -1168,7 +1668,7 @@ public class GameManager extends Group {
      * @param randomLocation Location for the new tile.
      */
     private void addAndAnimateRandomTile(Location randomLocation) {
-        Tile tile = Tile.newRandomTile();
+        Tile tile = obtainTile(engine.getValue(randomLocation));
         tile.setLocation(randomLocation);
         log.log(Level.INFO, "Added random tile. {0}", tile.toString());
         newRandomTile = tile;
@@ -1183,14 +1683,85 @@ public class GameManager extends Group {
         tile.setScaleX(0);
         tile.setScaleY(0);
 
-        gameGrid.put(tile.getLocation(), tile);
+        gameGrid[index(tile.getLocation())] = tile;
         gridGroup.getChildren().add(tile);
 
-        animateNewlyAddedTile(tile).play();
+        if (singleTimer) {
+            tileAnimator.growTile(tile, newlyAddedTileDuration());
+            tileAnimator.play(() -> onFinishNewlyAddedTile.handle(null));
+        } else {
+            Timeline timeline = animateNewlyAddedTile(tile);
+            growTimelines.add(timeline);
+            timeline.setOnFinished(e -> {
+                growTimelines.remove(timeline);
+                onFinishNewlyAddedTile.handle(e);
+            });
+            timeline.play();
+        }
     }
 
-    //private static final Duration ANIMATION_EXISTING_TILE = Duration.millis(125);
-    private static Duration ANIMATION_EXISTING_TILE;
+    /**
+     * This method animates the movement of a tile in the current move.
+     *
+     * @param tile Tile to be animated.
+     * @param newLocation New location to move the tile to.
+     */
+    private void animateMove(Tile tile, Location newLocation) {
+        if (singleTimer) {
+            tileAnimator.moveTile(tile,
+                    newLocation.getLayoutX(CELL_SIZE) - (tile.getMinHeight() / 2),
+                    newLocation.getLayoutY(CELL_SIZE) - (tile.getMinHeight() / 2),
+                    existingTileDuration());
+        } else {
+            Timeline timeline = animateExistingTile(tile, newLocation);
+            moveTimelines.add(timeline);
+            parallelTransition.getChildren().add(timeline);
+        }
+    }
+
+    /**
+     * This method animates the hiding of a merged tile in the current move.
+     *
+     * @param tile Tile to be hidden.
+     */
+    private void animateHide(Tile tile) {
+        if (singleTimer) {
+            tileAnimator.fadeOutTile(tile, tileToBeMergedDuration());
+        } else {
+            Timeline timeline = hideTileToBeMerged(tile);
+            moveTimelines.add(timeline);
+            parallelTransition.getChildren().add(timeline);
+        }
+    }
+
+    /**
+     * Check if the animations must be quicker, since the autoplayer is going
+     * fast.
+     */
+    private boolean quickAnimations() {
+        return this.autoAI && this.moveGap < 500;
+    }
+
+    /**
+     * Return the duration of the movement of a tile.
+     */
+    private Duration existingTileDuration() {
+        return Duration.millis(quickAnimations() ? 15 : 125);
+    }
+
+    /**
+     * Return the duration of the animation of a newly added tile.
+     */
+    private Duration newlyAddedTileDuration() {
+        return Duration.millis(quickAnimations() ? 15 : 125);
+    }
+
+    /**
+     * Return the duration of the hiding of a merged tile.
+     */
+    private Duration tileToBeMergedDuration() {
+        return Duration.millis(quickAnimations() ? 15 : 150);
+    }
 
     /**
      * This method draws the animation for a tile movement.
@@ -1201,11 +1772,7 @@ public class GameManager extends Group {
      */
     private Timeline animateExistingTile(Tile tile, Location newLocation) {
         // quicker animation if the autoplayer is going fast
-        if (this.autoAI && this.moveGap < 500) {
-            ANIMATION_EXISTING_TILE = Duration.millis(15);
-        } else {
-            ANIMATION_EXISTING_TILE = Duration.millis(125);
-        }
+        Duration duration = existingTileDuration();
 
         Timeline timeline = new Timeline();
         KeyValue kvX = new KeyValue(tile.layoutXProperty(),
@@ -1213,8 +1780,8 @@ public class GameManager extends Group {
         KeyValue kvY = new KeyValue(tile.layoutYProperty(),
                 newLocation.getLayoutY(CELL_SIZE) - (tile.getMinHeight() / 2));
 
-        KeyFrame kfX = new KeyFrame(ANIMATION_EXISTING_TILE, kvX);
-        KeyFrame kfY = new KeyFrame(ANIMATION_EXISTING_TILE, kvY);
+        KeyFrame kfX = new KeyFrame(duration, kvX);
+        KeyFrame kfY = new KeyFrame(duration, kvY);
 
         timeline.getKeyFrames().add(kfX);
         timeline.getKeyFrames().add(kfY);
@@ -1224,15 +1791,11 @@ public class GameManager extends Group {
 
     // after last movement on full grid, check if there are movements available
     private EventHandler<ActionEvent> onFinishNewlyAddedTile = e -> {
-        if (this.gameGrid.values().parallelStream().noneMatch(Objects::isNull)
-                && !mergeMovementsAvailable()) {
+        if (engine.isGameOver()) {
             this.gameOverProperty.set(true);
         }
     };
 
-    //private static final Duration ANIMATION_NEWLY_ADDED_TILE = Duration.millis(125);
-    private static Duration ANIMATION_NEWLY_ADDED_TILE;
-
     /**
      * This method draws the animation for a newly added tile.
      *
@@ -1241,27 +1804,20 @@ public class GameManager extends Group {
      */
     private Timeline animateNewlyAddedTile(Tile tile) {
         // quicker animation if the autoplayer is going fast
-        if (this.autoAI && this.moveGap < 500) {
-            ANIMATION_NEWLY_ADDED_TILE = Duration.millis(15);
-        } else {
-            ANIMATION_NEWLY_ADDED_TILE = Duration.millis(125);
-        }
+        Duration duration = newlyAddedTileDuration();
 
         Timeline timeline = new Timeline();
         KeyValue kvX = new KeyValue(tile.scaleXProperty(), 1);
         KeyValue kvY = new KeyValue(tile.scaleYProperty(), 1);
 
-        KeyFrame kfX = new KeyFrame(ANIMATION_NEWLY_ADDED_TILE, kvX);
-        KeyFrame kfY = new KeyFrame(ANIMATION_NEWLY_ADDED_TILE, kvY);
+        KeyFrame kfX = new KeyFrame(duration, kvX);
+        KeyFrame kfY = new KeyFrame(duration, kvY);
 
         timeline.getKeyFrames().add(kfX);
         timeline.getKeyFrames().add(kfY);
-        timeline.setOnFinished(onFinishNewlyAddedTile);
         return timeline;
     }
 
-    private static Duration ANIMATION_TILE_TO_BE_MERGED;
-
     /**
      * This method hides the tiles ready to be merged.
      *
@@ -1270,43 +1826,125 @@ public class GameManager extends Group {
      */
     private Timeline hideTileToBeMerged(Tile tile) {
         // quicker animation if the autoplayer is going fast
-        if (this.autoAI && this.moveGap < 500) {
-            ANIMATION_TILE_TO_BE_MERGED = Duration.millis(15);
-        } else {
-            ANIMATION_TILE_TO_BE_MERGED = Duration.millis(150);
-        }
+        Duration duration = tileToBeMergedDuration();
         Timeline timeline = new Timeline();
         KeyValue kv = new KeyValue(tile.opacityProperty(), 0);
-        KeyFrame kf = new KeyFrame(ANIMATION_TILE_TO_BE_MERGED, kv);
+        KeyFrame kf = new KeyFrame(duration, kv);
         timeline.getKeyFrames().add(kf);
         return timeline;
     }
 
     /**
-     * This method saves the current game status. It is restorable through the
+     * This method saves the current game status in the default slot. It is
+     * restorable through the
      * {@link game2048.GameManager#restoreSession() restoreSession} method.
      */
     public void saveSession() {
-        SessionManager sessionManager = new SessionManager(DEFAULT_GRID_SIZE);
-        sessionManager.saveSession(gameGrid, gameScoreProperty.getValue());
+        saveSession(SessionManager.DEFAULT_SLOT);
     }
 
     /**
-     * This method restores the last saved game status. The status can be saved
-     * through the {@link game2048.GameManager#saveSession() saveSession}
-     * method.
+     * This method saves the current game status in a slot. The status is
+     * read from the engine on the FX thread, and written to the disk on the
+     * session thread, so the game is not stalled by the file system.
+     * @param slot Name of the slot.
+     */
+    public void saveSession(String slot) {
+        flushBoard();
+        int[] cells = new int[gridSize * gridSize];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = engine.getValue(i % gridSize, i / gridSize);
+        }
+        int score = engine.getScore();
+        int moveCount = engine.getMoveCount();
+        long randomState = engine.getRandomState();
+        sessionExecutor.execute(() -> {
+            if (sessionManager.saveSession(slot, cells, score, moveCount,
+                    randomState)) {
+                log.info("Session saved in the slot " + slot);
+            }
+            refreshSlots();
+        });
+    }
+
+    /**
+     * This method restores the game status saved in the default slot. The
+     * status can be saved through the
+     * {@link game2048.GameManager#saveSession() saveSession} method.
      */
     public void restoreSession() {
-        SessionManager sessionManager = new SessionManager(DEFAULT_GRID_SIZE);
+        restoreSession(SessionManager.DEFAULT_SLOT);
+    }
 
+    /**
+     * This method restores the game status saved in a slot. The session is
+     * read on the session thread, after the pending saves, and the game is
+     * then restored on the FX thread.
+     * @param slot Name of the slot.
+     */
+    public void restoreSession(String slot) {
+        sessionExecutor.execute(() -> {
+            SessionManager.Session session = sessionManager.restoreSession(slot);
+            Platform.runLater(() -> applySession(session));
+        });
+    }
+
+    /**
+     * Replace the current game with a saved one.
+     * @param session The saved game, or <code>null</code> to start a new
+     * game.
+     */
+    private void applySession(SessionManager.Session session) {
         clearGame();
-        int score = sessionManager.restoreSession(gameGrid);
-        if (score >= 0) {
-            gameScoreProperty.set(score);
-            redrawTilesInGameGrid();
-        } else {
+        if (session == null) {
             // not session found, restart again
             resetGame();
+            return;
+        }
+        int[] cells = session.getCells();
+        for (int i = 0; i < cells.length; i++) {
+            engine.setValue(Location.of(i % gridSize, i / gridSize), cells[i]);
+        }
+        engine.setScore(session.getScore());
+        engine.setMoveCount(session.getMoveCount());
+        engine.setRandomState(session.getRandomState());
+        journal.start(engine);
+        gameScoreProperty.set(session.getScore());
+        if (boardCanvas != null) {
+            drawBoard();
+            return;
+        }
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] > 0) {
+                Tile tile = obtainTile(cells[i]);
+                tile.setLocation(Location.of(i % gridSize, i / gridSize));
+                gameGrid[i] = tile;
+            }
+        }
+        redrawTilesInGameGrid();
+    }
+
+    /**
+     * Read the index of the saved sessions on the session thread, and update
+     * the list of the slots shown by the menu.
+     */
+    private void refreshSlots() {
+        List<String> names = sessionManager.getSlots();
+        Platform.runLater(() -> sessionSlots.setAll(names));
+    }
+
+    /**
+     * This method closes the journal, so the game is not recovered at the
+     * next start, and stops the session thread after the pending saves,
+     * waiting for them for at most a second. It is called on exit.
+     */
+    public void shutdown() {
+        journal.close();
+        sessionExecutor.shutdown();
+        try {
+            sessionExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 }
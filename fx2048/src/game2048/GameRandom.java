@@ -0,0 +1,89 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import java.util.Random;
+
+/**
+ * This class is a random generator whose state can be read and restored, so
+ * a saved game goes on with the same random tiles it would have had. It uses
+ * the same linear congruential generator of java.util.Random, which does not
+ * expose its state: with the same seed, the two generators produce the same
+ * sequence.
+ * @author Martino Pilia
+ */
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    /**
+     * This is the constructor for the class. The generator is seeded with
+     * a value very likely to be different from any other invocation.
+     */
+    public GameRandom() {
+        super();
+    }
+
+    /**
+     * This is the constructor for the class.
+     * @param seed Initial seed.
+     */
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed); // resets the cached gaussian
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Return the state of the generator.
+     * @return The 48 bits state.
+     */
+    public synchronized long getState() {
+        return state;
+    }
+
+    /**
+     * Restore a state returned by {@link #getState() getState}.
+     * @param state The 48 bits state.
+     */
+    public synchronized void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected synchronized int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+}
@@ -43,6 +43,25 @@ package game2048;
  */
 public class Location {
 
+    /** Largest grid size whose locations are preallocated. */
+    public static final int CACHED_GRID_SIZE = 16;
+
+    /** Number of preallocated reserved locations, from (-1,-1) down. */
+    public static final int CACHED_RESERVED = 8;
+
+    private static final Location[] CELLS
+            = new Location[CACHED_GRID_SIZE * CACHED_GRID_SIZE];
+    private static final Location[] RESERVED = new Location[CACHED_RESERVED];
+
+    static {
+        for (int y = 0; y < CACHED_GRID_SIZE; y++) {
+            for (int x = 0; x < CACHED_GRID_SIZE; x++)
+                CELLS[y * CACHED_GRID_SIZE + x] = new Location(x, y);
+        }
+        for (int i = 0; i < CACHED_RESERVED; i++)
+            RESERVED[i] = new Location(-1, -1 - i);
+    }
+
     private final int x;
     private final int y;
 
@@ -57,14 +76,32 @@ public class Location {
     }
 
     /**
-     * Returns a new location, located at a specified distance from the
-     * current location.
+     * Return the location with the desired coords. The locations inside a
+     * grid of size up to CACHED_GRID_SIZE and the reserved locations used to
+     * pass the settings to the automatic player, from (-1,-1) to
+     * (-1,-CACHED_RESERVED), are preallocated, and the same instance is
+     * always returned for them; a new object is built for other coords.
+     * @param x The x coord.
+     * @param y The y coord.
+     * @return The location.
+     */
+    public static Location of(int x, int y) {
+        if (x >= 0 && x < CACHED_GRID_SIZE && y >= 0 && y < CACHED_GRID_SIZE)
+            return CELLS[y * CACHED_GRID_SIZE + x];
+        if (x == -1 && y < 0 && y >= -CACHED_RESERVED)
+            return RESERVED[-1 - y];
+        return new Location(x, y);
+    }
+
+    /**
+     * Returns the location at a specified distance from the current
+     * location.
      * @param direction The desired direction for the new location.
-     * @return A new Location object, located at a specified distance from the
+     * @return A Location object, located at a specified distance from the
      * current location.
      */
     public Location offset(Direction direction) {
-        return new Location(x + direction.getX(), y + direction.getY());
+        return of(x + direction.getX(), y + direction.getY());
     }
 
     /**
@@ -107,6 +144,9 @@ public class Location {
      */
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj == null) {
             return false;
         }
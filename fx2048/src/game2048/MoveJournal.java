@@ -0,0 +1,330 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * This class keeps a write-ahead journal of the current game, so the game can
+ * be rebuilt after a crash or a kill of the application. The journal starts
+ * with a snapshot of the game, followed by an entry for each move: two bytes
+ * holding the direction of the move and the cell and the value of the random
+ * tile added after it. A new snapshot is written every SNAPSHOT_INTERVAL
+ * moves, so a damaged entry loses only the moves after it.
+ * The snapshots hold the state of the random generator: when the journal is
+ * replayed, each random tile is drawn again from the generator and checked
+ * against the entry, so the rebuilt game goes on with the same tiles.
+ * The journal is written through a memory mapped file: an entry is a couple
+ * of stores in memory, flushed to the disk by the operating system even if
+ * the application dies, so the FX thread never waits for the disk. The
+ * mapped pages are forced to the disk on a background executor after each
+ * snapshot. Each write is followed by an end marker, so the file does not
+ * need to be truncated when a new game starts.
+ * When the application is closed normally the journal is marked as closed,
+ * and there is nothing to recover at the next start.
+ * @author Martino Pilia
+ */
+public class MoveJournal {
+
+    /** Number of moves between two snapshots. */
+    public static final int SNAPSHOT_INTERVAL = 512;
+
+    private static final int MAGIC = 0x324A524E; // "2JRN"
+    private static final byte VERSION = 1;
+    private static final int HEADER = 6;
+    private static final byte END = 0;
+    private static final byte SNAPSHOT = 1;
+    private static final byte CLOSED = 2;
+    private static final int MOVE = 0x8000; // flag of a move entry
+    private static final int FOUR = 0x1000; // the random tile is a 4
+    private static final int CELL_MASK = 0xFFF;
+    private static final int REGION = 1 << 20; // bytes mapped at a time
+
+    public final String JOURNAL_FILENAME;
+    private final Path path;
+    private final int gridSize;
+    private final int snapshotSize;
+    private final Executor executor;
+    private final Logger log = Logger.getLogger(getClass().getName());
+    private FileChannel channel = null;
+    private MappedByteBuffer buffer = null; // mapped region of the file
+    private long base = 0; // offset of the mapped region in the file
+    private int moves = 0; // moves since the last snapshot
+    private boolean failed = false; // journal disabled after an error
+
+    /**
+     * This is the constructor for the class.
+     * @param gridSize The current grid size.
+     * @param executor Executor used to force the journal to the disk.
+     */
+    public MoveJournal(int gridSize, Executor executor) {
+        this.gridSize = gridSize;
+        this.executor = executor;
+        this.JOURNAL_FILENAME = "game2048_" + gridSize + ".journal";
+        this.path = Paths.get(JOURNAL_FILENAME);
+        this.snapshotSize = 1 + 16 + gridSize * gridSize + 4;
+    }
+
+    /**
+     * This method rebuilds the game recorded in the journal, replaying the
+     * moves after the last valid snapshot. The replay stops at the first
+     * entry which is damaged or does not fit the game. It must be called
+     * before {@link #start(game2048.GameEngine) start}, which overwrites the
+     * journal.
+     * @return The rebuilt game, or <code>null</code> if there is no journal
+     * or it has been closed normally.
+     */
+    public SessionManager.Session recover() {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(path);
+        } catch (NoSuchFileException ignored) {
+            return null;
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Cannot read the journal", ex);
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.remaining() < HEADER || in.getInt() != MAGIC
+                || in.get() != VERSION || in.get() != gridSize)
+            return null;
+
+        GameRandom random = new GameRandom();
+        GameEngine engine = null;
+        boolean randomKnown = false;
+        int replayed = 0;
+        while (in.hasRemaining()) {
+            int tag = in.get(in.position());
+            if (tag == END)
+                break;
+            if (tag == CLOSED)
+                return null;
+            if (tag == SNAPSHOT) {
+                if (in.remaining() < snapshotSize)
+                    break;
+                GameEngine snapshot = new GameEngine(gridSize, random);
+                long state = readSnapshot(in, snapshot);
+                if (state == -2)
+                    break; // damaged snapshot
+                engine = snapshot;
+                randomKnown = state != -1;
+                if (randomKnown)
+                    random.setState(state);
+                replayed = 0;
+                continue;
+            }
+            if ((tag & 0x80) == 0 || engine == null || in.remaining() < 2)
+                break;
+            int entry = in.getShort() & 0xFFFF;
+            Direction direction = Direction.values()[(entry >> 13) & 3];
+            int cell = entry & CELL_MASK;
+            int value = (entry & FOUR) != 0 ? 4 : 2;
+            if (cell >= gridSize * gridSize || !engine.move(direction))
+                break;
+            Location location = Location.of(cell % gridSize, cell / gridSize);
+            if (randomKnown) {
+                Location drawn = engine.addRandomTile();
+                if (!location.equals(drawn)
+                        || engine.getValue(location) != value) {
+                    log.warning("Random tile not matching the journal");
+                    if (drawn != null)
+                        engine.setValue(drawn, 0);
+                    randomKnown = false; // the generator has diverged
+                }
+            }
+            if (engine.getValue(location) != value) {
+                if (engine.getValue(location) != 0)
+                    break;
+                engine.setValue(location, value);
+            }
+            replayed++;
+        }
+        if (engine == null)
+            return null;
+        log.info("Journal replayed: " + replayed
+                + " moves after the last snapshot");
+
+        int[] cells = new int[gridSize * gridSize];
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = engine.getValue(i % gridSize, i / gridSize);
+        return new SessionManager.Session("journal", System.currentTimeMillis(),
+                cells, engine.getScore(), engine.getMoveCount(),
+                randomKnown ? random.getState() : -1);
+    }
+
+    /**
+     * This method starts the journal of a new game, overwriting the previous
+     * one with a snapshot of the engine.
+     * @param engine The engine holding the new game.
+     */
+    public void start(GameEngine engine) {
+        if (failed)
+            return;
+        try {
+            if (channel == null)
+                channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (buffer == null || base != 0) {
+                base = 0;
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION);
+            }
+            buffer.clear();
+            buffer.putInt(MAGIC);
+            buffer.put(VERSION);
+            buffer.put((byte) gridSize);
+            writeSnapshot(engine);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    /**
+     * This method records a move and the random tile added after it. It is
+     * called on the FX thread, after the tile has been added to the engine.
+     * @param direction Direction of the move.
+     * @param location Location of the random tile, or <code>null</code> if
+     * no tile has been added.
+     * @param engine The engine holding the game.
+     */
+    public void record(Direction direction, Location location,
+            GameEngine engine) {
+        if (failed || buffer == null || location == null)
+            return;
+        try {
+            if (++moves >= SNAPSHOT_INTERVAL) {
+                writeSnapshot(engine); // holds this move too
+                return;
+            }
+            int cell = location.getY() * gridSize + location.getX();
+            int entry = MOVE | direction.ordinal() << 13 | cell
+                    | (engine.getValue(location) == 4 ? FOUR : 0);
+            reserve(2);
+            buffer.putShort((short) entry);
+            buffer.put(buffer.position(), END);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    /**
+     * This method marks the journal as closed, so the game is not recovered
+     * at the next start. It is called when the application exits normally.
+     */
+    public void close() {
+        if (buffer == null)
+            return;
+        try {
+            reserve(1);
+            buffer.put(buffer.position(), CLOSED);
+            buffer.force();
+            channel.close();
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Cannot close the journal", ex);
+        }
+        buffer = null;
+        channel = null;
+    }
+
+    /**
+     * Write a snapshot of the engine, followed by the end marker, and force
+     * the journal to the disk in background.
+     */
+    private void writeSnapshot(GameEngine engine) throws IOException {
+        reserve(snapshotSize);
+        int start = buffer.position();
+        buffer.put(SNAPSHOT);
+        buffer.putInt(engine.getMoveCount());
+        buffer.putInt(engine.getScore());
+        buffer.putLong(engine.getRandomState());
+        for (int y = 0; y < gridSize; y++) {
+            for (int x = 0; x < gridSize; x++) {
+                int value = engine.getValue(x, y);
+                buffer.put((byte) (value == 0
+                        ? 0 : Integer.numberOfTrailingZeros(value)));
+            }
+        }
+        CRC32 crc = new CRC32();
+        for (int i = start + 1; i < buffer.position(); i++)
+            crc.update(buffer.get(i));
+        buffer.putInt((int) crc.getValue());
+        buffer.put(buffer.position(), END);
+        moves = 0;
+
+        MappedByteBuffer mapped = buffer;
+        executor.execute(mapped::force);
+    }
+
+    /**
+     * Read a snapshot into an engine.
+     * @return The state of the random generator, <code>-1</code> if unknown,
+     * or <code>-2</code> if the snapshot is damaged.
+     */
+    private long readSnapshot(ByteBuffer in, GameEngine engine) {
+        int start = in.position();
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), start + 1, snapshotSize - 5);
+        in.get(); // tag
+        int moveCount = in.getInt();
+        int score = in.getInt();
+        long state = in.getLong();
+        for (int i = 0; i < gridSize * gridSize; i++) {
+            int exp = in.get();
+            engine.setValue(Location.of(i % gridSize, i / gridSize),
+                    exp == 0 ? 0 : 1 << exp);
+        }
+        if (in.getInt() != (int) crc.getValue())
+            return -2;
+        engine.setScore(score);
+        engine.setMoveCount(moveCount);
+        return state;
+    }
+
+    /**
+     * Make room in the mapped region for a record and its end marker,
+     * mapping the following region of the file when the current one is
+     * full.
+     */
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() > bytes)
+            return;
+        base += buffer.position();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, base, REGION);
+    }
+
+    /**
+     * Disable the journal after an error, so the game goes on without it.
+     */
+    private void fail(IOException ex) {
+        log.log(Level.SEVERE, "Journal disabled", ex);
+        failed = true;
+        buffer = null;
+    }
+}
@@ -69,7 +69,7 @@ public class QuickGrid extends HashMap<game2048.Location,Integer>
         String out = "";
         for (int j = 0; j < gridSize; j++ ) {       // rows
             for (int i = 0; i < gridSize; i++) {    // column
-                String val = this.get(new Location(i, j)).toString();
+                String val = this.get(Location.of(i, j)).toString();
                 out += "\t" + ((val.equals("-1")) ? "0" : val);
             }
             out += "\n";
@@ -0,0 +1,244 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import giocatoreAutomatico.GiocatoreAutomatico;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class is a command line runner which plays complete games with the
+ * GiocatoreAutomatico, without any graphical interface, in order to compare
+ * the configurations of the player over a large number of games.
+ * The games are played by a pool of worker threads through a GameEngine. Each
+ * game uses a new player and its own random generator, seeded with the base
+ * seed plus the number of the game, so a game can be replayed on its own.
+ * A line with score, highest tile and number of moves is printed for each
+ * game when it ends, followed by the aggregate statistics.
+ * Usage:
+ * <pre>
+ * java game2048.SelfPlay games style depth threads [timeBudget [seed]]
+ * </pre>
+ * Since the games are already played in parallel, the search of the player
+ * runs on a single thread, unless the property
+ * <code>giocatoreAutomatico.threads</code> is set.
+ * @author Martino Pilia
+ */
+public class SelfPlay {
+
+    private static final int GRID_SIZE = 4;
+    private static final Location PLAYING_STYLE_LOCATION = Location.of(-1, -1);
+    private static final Location DEPTH_LOCATION = Location.of(-1, -2);
+    private static final Location TIME_BUDGET_LOCATION = Location.of(-1, -3);
+    private static final Direction[] MOVES = { // 0=ALTO; 1=DX; 2=BASSO; 3=SX
+        Direction.UP, Direction.RIGHT, Direction.DOWN, Direction.LEFT
+    };
+
+    private final int style;
+    private final int depth;
+    private final int timeBudget;
+    private final long seed;
+
+    /**
+     * This class holds the result of a game.
+     */
+    private static class Result {
+
+        int game;
+        int score;
+        int maxTile;
+        int moves;
+        long time; // ms
+    }
+
+    /**
+     * This is the constructor for the class.
+     * @param style Playing style (1 = random, 2 = blind, 3 = minimax,
+     * 4 = expectimax).
+     * @param depth Search depth.
+     * @param timeBudget Time per move in milliseconds, 0 for a fixed depth
+     * search.
+     * @param seed Base seed for the random tiles.
+     */
+    public SelfPlay(int style, int depth, int timeBudget, long seed) {
+        this.style = style;
+        this.depth = depth;
+        this.timeBudget = timeBudget;
+        this.seed = seed;
+    }
+
+    /**
+     * Play a complete game.
+     * @param game Number of the game, added to the base seed.
+     * @return The result of the game.
+     * @throws Exception if the player cannot be created.
+     */
+    private Result play(int game) throws Exception {
+        long start = System.currentTimeMillis();
+        GiocatoreAutomatico player = GiocatoreAutomatico.getGiocatoreAutomatico();
+        GameEngine engine = new GameEngine(GRID_SIZE, new Random(seed + game));
+        ArrayGrid griglia = new ArrayGrid(GRID_SIZE);
+        griglia.put(PLAYING_STYLE_LOCATION, style);
+        griglia.put(DEPTH_LOCATION, depth);
+        griglia.put(TIME_BUDGET_LOCATION, timeBudget);
+
+        engine.start();
+        while (!engine.isGameOver()) {
+            int move = player.prossimaMossa(engine.fill(griglia));
+            if (move < 0 || move >= MOVES.length)
+                throw new InvalidMoveException(
+                        "Invalid move from the GiocatoreAutomatico");
+            if (!engine.move(MOVES[move]))
+                break; // the player would ask the same move forever
+            engine.addRandomTile();
+        }
+
+        Result result = new Result();
+        result.game = game;
+        result.score = engine.getScore();
+        result.maxTile = engine.getMaxTile();
+        result.moves = engine.getMoveCount();
+        result.time = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    /**
+     * Play the games on a pool of worker threads, printing the result of each
+     * game as soon as it ends.
+     * @param games Number of games.
+     * @param threads Number of worker threads.
+     * @return The results, in order of game.
+     * @throws InterruptedException if interrupted while waiting the games.
+     * @throws ExecutionException if a game fails.
+     */
+    private List<Result> run(int games, int threads)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<>(games);
+        try {
+            for (int i = 0; i < games; i++) {
+                final int game = i;
+                futures.add(executor.submit(() -> {
+                    Result r = play(game);
+                    synchronized (System.out) {
+                        System.out.printf("%d\t%d\t%d\t%d\t%d%n",
+                                r.game, r.score, r.maxTile, r.moves, r.time);
+                    }
+                    return r;
+                }));
+            }
+            List<Result> results = new ArrayList<>(games);
+            for (Future<Result> f : futures)
+                results.add(f.get());
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Print the aggregate statistics of a set of games.
+     * @param results Results of the games.
+     * @param elapsed Wall clock time of the run, in milliseconds.
+     */
+    private static void printStatistics(List<Result> results, long elapsed) {
+        int n = results.size();
+        int[] scores = new int[n];
+        double sum = 0;
+        double moves = 0;
+        Map<Integer, Integer> tiles = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            Result r = results.get(i);
+            scores[i] = r.score;
+            sum += r.score;
+            moves += r.moves;
+            tiles.merge(r.maxTile, 1, Integer::sum);
+        }
+        Arrays.sort(scores);
+        double mean = sum / n;
+        double variance = 0;
+        for (int s : scores)
+            variance += (s - mean) * (s - mean);
+        double deviation = n > 1 ? Math.sqrt(variance / (n - 1)) : 0;
+
+        System.out.println();
+        System.out.printf("games\t%d%n", n);
+        System.out.printf("score\tmean %.1f\tstddev %.1f\tstderr %.1f%n",
+                mean, deviation, deviation / Math.sqrt(n));
+        System.out.printf("score\tmin %d\tmedian %d\tmax %d%n",
+                scores[0], scores[n / 2], scores[n - 1]);
+        System.out.printf("moves\tmean %.1f%n", moves / n);
+        System.out.printf("time\t%.1f s\t%.2f games/s\t%.1f moves/s%n",
+                elapsed / 1000.0, n * 1000.0 / elapsed, moves * 1000 / elapsed);
+
+        // share of the games reaching each tile
+        int reached = n;
+        for (Map.Entry<Integer, Integer> e : tiles.entrySet()) {
+            System.out.printf("tile\t%d\t%.1f%%%n",
+                    e.getKey(), 100.0 * reached / n);
+            reached -= e.getValue();
+        }
+    }
+
+    /**
+     * Entry point of the runner.
+     * @param args games, style, depth, threads and optionally the time per
+     * move in milliseconds and the base seed.
+     */
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 6) {
+            System.err.println("Usage: java game2048.SelfPlay "
+                    + "games style depth threads [timeBudget [seed]]");
+            System.exit(1);
+        }
+
+        int games = Integer.parseInt(args[0]);
+        int style = Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[2]);
+        int threads = Integer.parseInt(args[3]);
+        int timeBudget = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+        if (games < 1 || threads < 1) {
+            System.err.println("At least a game and a thread are needed.");
+            System.exit(1);
+        }
+
+        if (System.getProperty("giocatoreAutomatico.threads") == null)
+            System.setProperty("giocatoreAutomatico.threads", "1");
+
+        System.out.println("game\tscore\tmaxTile\tmoves\tms");
+        long start = System.currentTimeMillis();
+        try {
+            List<Result> results = new SelfPlay(style, depth, timeBudget, seed)
+                    .run(games, threads);
+            printStatistics(results, System.currentTimeMillis() - start);
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error while playing: " + e.getCause());
+            System.exit(1);
+        }
+    }
+}
@@ -37,28 +37,151 @@
 
 package game2048;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 /**
  * This class provides a SessionManager object. It provides functionality for
  * saving and restoring the game status.
+ * The sessions of a grid size are kept in named slots, all stored in a
+ * single binary file: a header with the number of slots, followed by a
+ * record for each slot, holding its name, the time of the save, the score,
+ * the number of moves, the state of the random generator and the grid, one
+ * byte for each cell with the base 2 logarithm of the tile (0 for an empty
+ * cell). Each record ends with a CRC32 checksum, and a record which does not
+ * match it is discarded when the file is read.
+ * The file is never overwritten in place: a save writes the whole file in a
+ * temporary file, forces it to the disk and renames it over the old one, then
+ * forces the directory holding the rename, so a crash during a save leaves
+ * either the previous file or the new one intact.
+ * A game saved by the older versions in game2048_N.properties is imported in
+ * the default slot when there is no session file yet.
+ * The slots are read from the file the first time they are needed and then
+ * kept in memory, so a save writes a few hundred bytes and reads nothing.
+ * The methods access the file, so they should not be called on the FX thread.
  * @author José Pereda
  * date 22-abr-2014 - 12:11:11
  */
 public class SessionManager {
 
-    public final String SESSION_PROPERTIES_FILENAME;
-    private final Properties props = new Properties();
+    /** Name of the slot used by the save and restore commands. */
+    public static final String DEFAULT_SLOT = "default";
+
+    private static final int MAGIC = 0x32303438; // "2048"
+    private static final byte VERSION = 1;
+
+    public final String SESSION_FILENAME;
+    private final Path path;
+    private final Path temp;
+    private final Path legacy; // properties file of the older versions
     private final int grid_size;
+    private Map<String, Session> slots = null; // by name, in saving order
+    private final Logger log = Logger.getLogger(getClass().getName());
+
+    /**
+     * This class holds the status of a saved game.
+     */
+    public static final class Session {
+
+        private final String name;
+        private final long time;
+        private final int[] cells;
+        private final int score;
+        private final int moveCount;
+        private final long randomState;
+
+        /**
+         * This is the constructor for the class.
+         * @param name Name of the slot.
+         * @param time Time of the save, in milliseconds since the epoch.
+         * @param cells Tile values, indexed by <code>y * grid_size + x</code>,
+         * with <code>0</code> for an empty cell. The array is not copied.
+         * @param score Score of the game.
+         * @param moveCount Number of moves done.
+         * @param randomState State of the generator of the random tiles,
+         * <code>-1</code> if unknown.
+         */
+        public Session(String name, long time, int[] cells, int score,
+                int moveCount, long randomState) {
+            this.name = name;
+            this.time = time;
+            this.cells = cells;
+            this.score = score;
+            this.moveCount = moveCount;
+            this.randomState = randomState;
+        }
+
+        /**
+         * Return the name of the slot.
+         * @return The slot name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Return the time of the save.
+         * @return Milliseconds since the epoch.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Return the tile values, indexed by <code>y * grid_size + x</code>.
+         * @return The values, with <code>0</code> for an empty cell. The
+         * array must not be changed.
+         */
+        public int[] getCells() {
+            return cells;
+        }
+
+        /**
+         * Return the score of the game.
+         * @return The score.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Return the number of moves done.
+         * @return Number of valid moves.
+         */
+        public int getMoveCount() {
+            return moveCount;
+        }
+
+        /**
+         * Return the state of the generator of the random tiles.
+         * @return The state, <code>-1</code> if unknown.
+         */
+        public long getRandomState() {
+            return randomState;
+        }
+    }
 
     /**
      * This is the constructor for the SessionManager class.
@@ -66,79 +189,252 @@ public class SessionManager {
      */
     public SessionManager(int grid_size) {
         this.grid_size = grid_size;
-        this.SESSION_PROPERTIES_FILENAME = "game2048_" + grid_size 
-                + ".properties";
+        this.SESSION_FILENAME = "game2048_" + grid_size + ".session";
+        this.path = Paths.get(SESSION_FILENAME);
+        this.temp = Paths.get(SESSION_FILENAME + ".tmp");
+        this.legacy = Paths.get("game2048_" + grid_size + ".properties");
     }
 
     /**
-     * This method saves the game status. It will be restorable with the 
-     * {@link game2048.SessionManager#restoreSession(java.util.Map) restoreSession}
+     * This method saves the game status in a slot, replacing the session
+     * already saved there. It will be restorable with the
+     * {@link game2048.SessionManager#restoreSession(java.lang.String) restoreSession}
      * method.
-     * @param gameGrid Size of the current grid.
+     * @param slot Name of the slot.
+     * @param cells Tile values on the game grid, indexed by
+     * <code>y * grid_size + x</code>, with <code>0</code> for an empty cell.
+     * The array is copied.
      * @param score Current score.
+     * @param moveCount Number of moves done.
+     * @param randomState State of the generator of the random tiles,
+     * <code>-1</code> if unknown.
+     * @return <code>true</code> if the session has been written,
+     * <code>false</code> otherwise.
      */
-    public void saveSession(Map<Location, Tile> gameGrid, Integer score) {
+    public synchronized boolean saveSession(String slot, int[] cells,
+            int score, int moveCount, long randomState) {
+        loadSlots();
+        Session session = new Session(slot, System.currentTimeMillis(),
+                cells.clone(), score, moveCount, randomState);
+        slots.remove(slot); // the last saved slot goes at the end
+        slots.put(slot, session);
         try {
-            IntStream.range(0, grid_size).boxed().forEach(t_x -> {
-                IntStream.range(0, grid_size).boxed().forEach(t_y -> {
-                    Tile t = gameGrid.get(new Location(t_x, t_y));
-                    props.setProperty(
-                            "Location_" + t_x.toString() + "_" + t_y.toString(),
-                            t != null ? t.getValue().toString() : "0");
-                });
-            });
-            props.setProperty("score", score.toString());
-            props.store(new FileWriter(SESSION_PROPERTIES_FILENAME),
-                    SESSION_PROPERTIES_FILENAME);
+            write();
+            return true;
         } catch (IOException ex) {
-            Logger.getLogger(getClass().getName()).log(Level.SEVERE, null, ex);
+            log.log(Level.SEVERE, "Cannot save the session", ex);
+            return false;
         }
     }
 
     /**
-     * This method restores the last saved game status. The status is saved with the
-     * {@link game2048.SessionManager#saveSession(java.util.Map, java.lang.Integer) saveSession}
+     * This method restores the game status saved in a slot. The status is
+     * saved with the
+     * {@link game2048.SessionManager#saveSession(java.lang.String, int[], int, int, long) saveSession}
      * method.
-     * @param gameGrid A <code>Map</code> of <code>Location</code> to 
-     * <code>Tile</code> representing the
-     * tiles on the game grid.
+     * @param slot Name of the slot.
+     * @return The saved session, or <code>null</code> if no session has
+     * been saved in the slot.
+     */
+    public synchronized Session restoreSession(String slot) {
+        loadSlots();
+        return slots.get(slot);
+    }
+
+    /**
+     * Return the index of the saved sessions.
+     * @return The names of the slots, from the oldest save to the newest.
+     */
+    public synchronized List<String> getSlots() {
+        loadSlots();
+        return new ArrayList<>(slots.keySet());
+    }
+
+    /**
+     * Read the slots from the file, the first time they are needed.
      */
-    public int restoreSession(Map<Location, Tile> gameGrid) {
-        Reader reader = null;
+    private void loadSlots() {
+        if (slots != null)
+            return;
+        slots = new LinkedHashMap<>();
+        byte[] data;
         try {
-            reader = new FileReader(SESSION_PROPERTIES_FILENAME);
-            props.load(reader);
-        } catch (FileNotFoundException ignored) {
-            return -1;
+            data = Files.readAllBytes(path);
+        } catch (NoSuchFileException ignored) {
+            importLegacy();
+            return;
         } catch (IOException ex) {
-            Logger.getLogger(getClass().getName()).log(Level.SEVERE, null, ex);
-        } finally {
-            try {
-                if (reader != null) {
-                    reader.close();
+            log.log(Level.SEVERE, "Cannot read the sessions", ex);
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION
+                    || in.readByte() != grid_size) {
+                log.warning("Unknown session file " + SESSION_FILENAME);
+                return;
+            }
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                int length = in.readUnsignedShort();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != in.readInt()) {
+                    log.warning("Corrupted session discarded");
+                    continue;
                 }
-            } catch (IOException ex) {
-                Logger.getLogger(getClass().getName()).log(Level.SEVERE, null, ex);
+                Session session = decode(record);
+                slots.put(session.getName(), session);
             }
+        } catch (EOFException ex) {
+            log.warning("Truncated session file " + SESSION_FILENAME);
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Cannot read the sessions", ex);
         }
+    }
 
-        IntStream.range(0, grid_size).boxed().forEach(t_x -> {
-            IntStream.range(0, grid_size).boxed().forEach(t_y -> {
-                String val = props.getProperty("Location_" + t_x.toString() + "_" + t_y.toString());
-                if (!val.equals("0")) {
-                    Tile t = Tile.newTile(new Integer(val));
-                    Location l = new Location(t_x, t_y);
-                    t.setLocation(l);
-                    gameGrid.put(l, t);
-                }
-            });
-        });
+    /**
+     * Write all the slots in a temporary file, then replace the session
+     * file with it.
+     */
+    private void write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                16 + slots.size() * (48 + grid_size * grid_size));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(grid_size);
+        out.writeShort(slots.size());
+        for (Session session : slots.values()) {
+            byte[] record = encode(session);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            out.writeShort(record.length);
+            out.write(record);
+            out.writeInt((int) crc.getValue());
+        }
+        out.flush();
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory();
+    }
+
+    /**
+     * Force the directory of the session file to the disk, so the rename
+     * survives a crash. Some platforms cannot open a directory: there the
+     * rename is left to the file system.
+     */
+    private void forceDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory,
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            log.log(Level.FINE, "Cannot force the session directory", ex);
+        }
+    }
 
-        String score = props.getProperty("score");
-        if (score != null) {
-            return new Integer(score);
+    /**
+     * Import the game saved by the older versions in the properties file,
+     * if any, in the default slot of a new session file. The properties file
+     * holds a property Location_x_y for each cell and the score; the number
+     * of moves and the state of the random generator were not saved.
+     */
+    private void importLegacy() {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(legacy)) {
+            props.load(reader);
+        } catch (NoSuchFileException ignored) {
+            return;
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Cannot read the old session " + legacy, ex);
+            return;
+        }
+        int[] cells = new int[grid_size * grid_size];
+        int score;
+        try {
+            for (int i = 0; i < cells.length; i++) {
+                String value = props.getProperty("Location_" + i % grid_size
+                        + "_" + i / grid_size);
+                if (value == null)
+                    throw new NumberFormatException("missing cell " + i);
+                cells[i] = Integer.parseInt(value.trim());
+                if (cells[i] < 0 || Integer.bitCount(cells[i]) > 1
+                        || cells[i] == 1)
+                    throw new NumberFormatException("tile " + cells[i]);
+            }
+            score = Integer.parseInt(props.getProperty("score", "0").trim());
+        } catch (NumberFormatException ex) {
+            log.log(Level.WARNING, "Old session " + legacy + " not imported",
+                    ex);
+            return;
+        }
+        long time;
+        try {
+            time = Files.getLastModifiedTime(legacy).toMillis();
+        } catch (IOException ex) {
+            time = System.currentTimeMillis();
+        }
+        slots.put(DEFAULT_SLOT,
+                new Session(DEFAULT_SLOT, time, cells, score, 0, -1));
+        try {
+            write();
+            log.info("Old session " + legacy + " imported in the slot "
+                    + DEFAULT_SLOT);
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Cannot save the imported session", ex);
+        }
+    }
+
+    /**
+     * Return the record of a session, without its checksum.
+     */
+    private byte[] encode(Session session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(session.getName());
+        out.writeLong(session.getTime());
+        out.writeInt(session.getScore());
+        out.writeInt(session.getMoveCount());
+        out.writeLong(session.getRandomState());
+        for (int value : session.getCells())
+            out.writeByte(value == 0 ? 0 : Integer.numberOfTrailingZeros(value));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Build a session from its record.
+     */
+    private Session decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(record));
+        String name = in.readUTF();
+        long time = in.readLong();
+        int score = in.readInt();
+        int moveCount = in.readInt();
+        long randomState = in.readLong();
+        int[] cells = new int[grid_size * grid_size];
+        for (int i = 0; i < cells.length; i++) {
+            int exp = in.readUnsignedByte();
+            cells[i] = exp == 0 ? 0 : 1 << exp;
         }
-        return 0;
+        return new Session(name, time, cells, score, moveCount, randomState);
     }
 
 }
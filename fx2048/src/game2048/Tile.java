@@ -39,18 +39,34 @@ package game2048;
 
 import java.util.Random;
 import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.Scene;
 import javafx.scene.control.Label;
+import javafx.scene.effect.Effect;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.Border;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
 
 /**
  * This class describes a tile for the game interface. Each tile is 
  * characterizad by a position and a value.
+ * The look of a tile is defined by the "tile-" + value classes in the game 
+ * stylesheet. The style of each value is resolved once and then set on the 
+ * tile, so a new or recycled tile is drawn with its style at once; the tile 
+ * keeps the "label" class and the class of its value too, so the rules not 
+ * held by the resolved style, as the font smoothing of the labels, apply to 
+ * every tile alike.
  * @author bruno.borges@oracle.com
  */
 public class Tile extends Label {
 
-    private Integer value;
+    private static final String STYLESHEET = "game2048/game.css";
+    private static final TileStyle[] STYLES = new TileStyle[32]; // by log2
+
+    private int value;
     private Location location;
-    private Boolean merged;
+    private boolean merged;
 
     /**
      * This is the constructor for the Tile class. Creates a new tile with the 
@@ -65,10 +81,8 @@ public class Tile extends Label {
         setPrefSize(squareSize, squareSize);
         setAlignment(Pos.CENTER);
 
-        this.value = value;
         this.merged = false;
-        setText(value.toString());
-        getStyleClass().add("tile-" + value);
+        setValue(value);
     }
 
     /**
@@ -95,11 +109,102 @@ public class Tile extends Label {
      * @param another Other tile to be merged with.
      */
     public void merge(Tile another) {
-        getStyleClass().remove("tile-" + value);
-        this.value += another.getValue();
-        setText(value.toString());
+        setValue(value + another.getValue());
         merged = true;
+    }
+
+    /**
+     * Prepare a tile which is not in use anymore to be shown again with a 
+     * new value, as a new tile.
+     * @param value Desired value.
+     */
+    void recycle(int value) {
+        setValue(value);
+        location = null;
+        merged = false;
+        setOpacity(1);
+        setScaleX(1);
+        setScaleY(1);
+    }
+
+    /**
+     * Set the value of the tile, with the corresponding text and style. The
+     * resolved style is set at once, while the "tile-" + value class keeps
+     * the tile matching the stylesheet, together with the "label" class of
+     * any Label.
+     * @param value Desired value.
+     */
+    private void setValue(int value) {
+        this.value = value;
+        getStyleClass().removeIf(c -> c.startsWith("tile-"));
         getStyleClass().add("tile-" + value);
+        TileStyle style = styleOf(value);
+        setText(style.text);
+        setBackground(style.background);
+        setBorder(style.border);
+        setFont(style.font);
+        setTextFill(style.textFill);
+        setEffect(style.effect);
+    }
+
+    /**
+     * Return the text shown by a tile with the desired value.
+     * @param value The tile value.
+     * @return The text of the tile.
+     */
+    static String textOf(int value) {
+        return styleOf(value).text;
+    }
+
+    /**
+     * Return the color of a tile with the desired value, as defined in the
+     * game stylesheet.
+     * @param value The tile value.
+     * @return The background color of the tile, or <code>null</code> if the
+     * stylesheet does not define it.
+     */
+    static Paint backgroundOf(int value) {
+        Background background = styleOf(value).background;
+        if (background == null || background.getFills().isEmpty()) {
+            return null;
+        }
+        return background.getFills().get(0).getFill();
+    }
+
+    /**
+     * Return the text color of a tile with the desired value, as defined in
+     * the game stylesheet.
+     * @param value The tile value.
+     * @return The text color of the tile.
+     */
+    static Paint textFillOf(int value) {
+        return styleOf(value).textFill;
+    }
+
+    /**
+     * Return the font of a tile with the desired value, as defined in the
+     * game stylesheet.
+     * @param value The tile value.
+     * @return The font of the tile.
+     */
+    static Font fontOf(int value) {
+        return styleOf(value).font;
+    }
+
+    /**
+     * Return the style for a tile value, resolving it the first time.
+     * @param value The tile value.
+     * @return The style for the value.
+     */
+    private static TileStyle styleOf(int value) {
+        if (value <= 0 || Integer.bitCount(value) != 1) {
+            return TileStyle.resolve(value); // not a valid tile, not cached
+        }
+        int exp = Integer.numberOfTrailingZeros(value);
+        if (STYLES[exp] == null) {
+            STYLES[exp] = TileStyle.resolve(value);
+        }
+        return STYLES[exp];
     }
 
     /**
@@ -159,4 +264,42 @@ public class Tile extends Label {
     public boolean isMergeable(Tile anotherTile) {
         return anotherTile != null && getValue().equals(anotherTile.getValue());
     }
+
+    /**
+     * This class holds the resolved style of a tile value: the text and the 
+     * properties set by the "tile-" + value class of the game stylesheet.
+     */
+    private static final class TileStyle {
+
+        private final String text;
+        private final Background background;
+        private final Border border;
+        private final Font font;
+        private final Paint textFill;
+        private final Effect effect;
+
+        private TileStyle(String text, Label label) {
+            this.text = text;
+            this.background = label.getBackground();
+            this.border = label.getBorder();
+            this.font = label.getFont();
+            this.textFill = label.getTextFill();
+            this.effect = label.getEffect();
+        }
+
+        /**
+         * Resolve the style of a tile value, applying the stylesheet to a 
+         * label with the style classes the tile would have.
+         * @param value The tile value.
+         * @return The style for the value.
+         */
+        private static TileStyle resolve(int value) {
+            Label label = new Label();
+            label.getStyleClass().add("tile-" + value);
+            Scene scene = new Scene(new Group(label));
+            scene.getStylesheets().add(STYLESHEET);
+            label.applyCss();
+            return new TileStyle(Integer.toString(value), label);
+        }
+    }
 }
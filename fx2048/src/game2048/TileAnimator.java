@@ -0,0 +1,232 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game2048;
+
+import java.util.Arrays;
+import javafx.animation.AnimationTimer;
+import javafx.util.Duration;
+
+/**
+ * This class animates the tiles of a move with a single AnimationTimer: at
+ * each pulse the position, scale and opacity of every animated tile are
+ * interpolated linearly, as a Timeline would do, but no animation object is
+ * created for each tile. The animations are collected in a batch, started
+ * together by {@link #play(Runnable) play}; when the longest one is over the
+ * timer stops and the action of the batch is run. The storage for the
+ * animations is reused across the batches.
+ * @author Martino Pilia
+ */
+class TileAnimator extends AnimationTimer {
+
+    private static final int MOVE = 0;
+    private static final int GROW = 1;
+    private static final int FADE_OUT = 2;
+
+    private Tile[] tiles;
+    private int[] kinds;
+    private double[] fromX; // layout x, or opacity for FADE_OUT
+    private double[] fromY;
+    private double[] toX;
+    private double[] toY;
+    private long[] durations; // ns
+    private int size = 0;
+    private long start = -1; // time of the first pulse of the batch
+    private boolean playing = false;
+    private Runnable onFinished = null;
+
+    /**
+     * This is the constructor for the class.
+     * @param capacity Expected number of animations in a batch.
+     */
+    TileAnimator(int capacity) {
+        tiles = new Tile[capacity];
+        kinds = new int[capacity];
+        fromX = new double[capacity];
+        fromY = new double[capacity];
+        toX = new double[capacity];
+        toY = new double[capacity];
+        durations = new long[capacity];
+    }
+
+    /**
+     * Add to the batch the movement of a tile from its current layout
+     * position to a new one.
+     * @param tile Tile to be moved.
+     * @param x Final layout x.
+     * @param y Final layout y.
+     * @param duration Length of the animation.
+     */
+    void moveTile(Tile tile, double x, double y, Duration duration) {
+        int i = add(tile, MOVE, duration);
+        fromX[i] = tile.getLayoutX();
+        fromY[i] = tile.getLayoutY();
+        toX[i] = x;
+        toY[i] = y;
+    }
+
+    /**
+     * Add to the batch the scaling of a tile from 0 to 1.
+     * @param tile Tile to be scaled.
+     * @param duration Length of the animation.
+     */
+    void growTile(Tile tile, Duration duration) {
+        add(tile, GROW, duration);
+    }
+
+    /**
+     * Add to the batch the fading of a tile from its current opacity to 0.
+     * @param tile Tile to be hidden.
+     * @param duration Length of the animation.
+     */
+    void fadeOutTile(Tile tile, Duration duration) {
+        int i = add(tile, FADE_OUT, duration);
+        fromX[i] = tile.getOpacity();
+    }
+
+    /**
+     * Start the animations of the batch.
+     * @param onFinished Action to be run when all the animations are over,
+     * or <code>null</code>.
+     */
+    void play(Runnable onFinished) {
+        this.onFinished = onFinished;
+        start = -1;
+        playing = true;
+        start();
+    }
+
+    /**
+     * Bring all the animations of the current batch to their end, and run
+     * the action of the batch.
+     */
+    void complete() {
+        if (!playing)
+            return;
+        for (int i = 0; i < size; i++)
+            apply(i, 1);
+        finish();
+    }
+
+    /**
+     * Check if a batch is playing.
+     * @return <code>true</code> if a batch is playing,
+     * <code>false</code> otherwise.
+     */
+    boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Stop the current batch, leaving the tiles as they are, without running
+     * the action of the batch.
+     * @return <code>true</code> if a batch was playing,
+     * <code>false</code> otherwise.
+     */
+    boolean cancel() {
+        boolean wasPlaying = playing;
+        stop();
+        clear();
+        onFinished = null;
+        return wasPlaying;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handle(long now) {
+        if (start < 0)
+            start = now;
+        long elapsed = now - start;
+        boolean done = true;
+        for (int i = 0; i < size; i++) {
+            double t = elapsed >= durations[i]
+                    ? 1 : (double) elapsed / durations[i];
+            apply(i, t);
+            if (t < 1)
+                done = false;
+        }
+        if (done)
+            finish();
+    }
+
+    /**
+     * Set the properties of an animated tile at a fraction of its animation.
+     */
+    private void apply(int i, double t) {
+        Tile tile = tiles[i];
+        switch (kinds[i]) {
+            case MOVE:
+                tile.setLayoutX(fromX[i] + (toX[i] - fromX[i]) * t);
+                tile.setLayoutY(fromY[i] + (toY[i] - fromY[i]) * t);
+                break;
+            case GROW:
+                tile.setScaleX(t);
+                tile.setScaleY(t);
+                break;
+            case FADE_OUT:
+                tile.setOpacity(fromX[i] * (1 - t));
+                break;
+        }
+    }
+
+    /**
+     * End the current batch and run its action, which can start a new batch.
+     */
+    private void finish() {
+        Runnable action = onFinished;
+        stop();
+        clear();
+        onFinished = null;
+        if (action != null)
+            action.run();
+    }
+
+    /**
+     * Remove all the animations, releasing the tiles.
+     */
+    private void clear() {
+        Arrays.fill(tiles, 0, size, null);
+        size = 0;
+        start = -1;
+        playing = false;
+    }
+
+    /**
+     * Add an animation to the batch, growing the storage if needed.
+     * @return Index of the animation.
+     */
+    private int add(Tile tile, int kind, Duration duration) {
+        if (size == tiles.length) {
+            int capacity = 2 * tiles.length + 1;
+            tiles = Arrays.copyOf(tiles, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            fromX = Arrays.copyOf(fromX, capacity);
+            fromY = Arrays.copyOf(fromY, capacity);
+            toX = Arrays.copyOf(toX, capacity);
+            toY = Arrays.copyOf(toY, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+        int i = size++;
+        tiles[i] = tile;
+        kinds[i] = kind;
+        durations[i] = (long) (duration.toMillis() * 1_000_000);
+        return i;
+    }
+}
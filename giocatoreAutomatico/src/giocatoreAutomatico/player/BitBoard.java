@@ -0,0 +1,283 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+import game2048.Location;
+import java.util.Map;
+
+/**
+ * This class provides static methods working on a 4x4 grid packed in a single
+ * <code>long</code>. Each cell takes 4 bits and holds the base 2 logarithm of
+ * the tile value (0 for an empty cell), so the grid can hold tiles up to
+ * 32768. The cell in Location(x, y) is stored in the nibble number
+ * <code>4 * y + x</code>, so each group of 16 bits represents a line of the
+ * grid, with the cell x = 0 in the lowest nibble. A board is a plain value:
+ * copying it is a single assignment, and it's intended to be used by the
+ * search algorithm of the automatic player instead of copying MyGriglia
+ * objects.
+ * @author Martino Pilia
+ */
+public final class BitBoard {
+
+    /** Size of the grid represented by a board. */
+    public static final int GRID_SIZE = 4;
+
+    /** Number of cells in the grid. */
+    public static final int CELLS = GRID_SIZE * GRID_SIZE;
+
+    /** Highest exponent which can be stored in a cell. */
+    public static final int MAX_EXPONENT = 15;
+
+    private static final long ROW_MASK = 0xFFFFL;
+
+    /**
+     * This class is not intended to be instantiated.
+     */
+    private BitBoard() {
+    }
+
+    /**
+     * This method packs a grid in a board. Only the cells inside the 4x4 grid
+     * are read, so the reserved locations used for the settings are ignored.
+     * @param grid Grid to be packed (-1 for empty cells).
+     * @return The packed board.
+     * @throws IllegalArgumentException if a tile value is not a power of 2
+     * which fits in a cell.
+     */
+    public static long fromGriglia(Map<Location, Integer> grid) {
+        long board = 0;
+        for (int x = 0; x < GRID_SIZE; x++) {
+            for (int y = 0; y < GRID_SIZE; y++) {
+                Integer val = grid.get(Location.of(x, y));
+                if (val == null || val == -1)
+                    continue;
+                board = setExponent(board, index(x, y), exponentOf(val));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Return the base 2 logarithm of a tile value.
+     * @param value Tile value.
+     * @return The exponent of the value.
+     * @throws IllegalArgumentException if the value is not a power of 2
+     * which fits in a cell.
+     */
+    public static int exponentOf(int value) {
+        int exp = Integer.numberOfTrailingZeros(value);
+        if (value < 2 || Integer.bitCount(value) != 1 || exp > MAX_EXPONENT)
+            throw new IllegalArgumentException("The value " + value
+                    + " cannot be stored in a board cell");
+        return exp;
+    }
+
+    /**
+     * Return the index of the cell in the desired location.
+     * @param x The x coord.
+     * @param y The y coord.
+     * @return Index of the cell (nibble number in the board).
+     */
+    public static int index(int x, int y) {
+        return GRID_SIZE * y + x;
+    }
+
+    /**
+     * Return the exponent stored in a cell.
+     * @param board The board.
+     * @param index Index of the cell.
+     * @return The exponent of the tile, <code>0</code> for an empty cell.
+     */
+    public static int getExponent(long board, int index) {
+        return (int) (board >>> (4 * index)) & 0xF;
+    }
+
+    /**
+     * Return the value of the tile in the desired location, using the same
+     * convention of the Griglia interface.
+     * @param board The board.
+     * @param x The x coord.
+     * @param y The y coord.
+     * @return The tile value, <code>-1</code> for an empty cell.
+     */
+    public static int getValue(long board, int x, int y) {
+        int exp = getExponent(board, index(x, y));
+        return exp == 0 ? -1 : 1 << exp;
+    }
+
+    /**
+     * Return a board equal to the one passed as argument, with the desired
+     * exponent stored in a cell.
+     * @param board The board.
+     * @param index Index of the cell.
+     * @param exp Exponent to be stored.
+     * @return The new board.
+     */
+    public static long setExponent(long board, int index, int exp) {
+        int shift = 4 * index;
+        return (board & ~(0xFL << shift)) | ((long) exp << shift);
+    }
+
+    /**
+     * This method returns the number of empty cells in the board.
+     * @param board The board.
+     * @return Number of empty cells.
+     */
+    public static int emptyCount(long board) {
+        int count = 0;
+        for (int i = 0; i < CELLS; i++) {
+            if (((board >>> (4 * i)) & 0xF) == 0)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * This method returns the sum of the values of the tiles in the board.
+     * @param board The board.
+     * @return Sum of the tile values.
+     */
+    public static int tileSum(long board) {
+        int sum = 0;
+        for (int i = 0; i < CELLS; i++) {
+            int exp = (int) (board >>> (4 * i)) & 0xF;
+            if (exp != 0)
+                sum += 1 << exp;
+        }
+        return sum;
+    }
+
+    /**
+     * This method does a move in the desired direction, following the game
+     * rules.
+     * @param board The board.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return The board after the move. It's equal to the original board if
+     * the move is not valid.
+     */
+    public static long move(long board, int m) {
+        switch (m) {
+            case 0:
+                return transpose(moveLeft(transpose(board)));
+            case 1:
+                return moveRight(board);
+            case 2:
+                return transpose(moveRight(transpose(board)));
+            case 3:
+                return moveLeft(board);
+            default:
+                throw new IllegalArgumentException("Invalid move " + m);
+        }
+    }
+
+    /**
+     * This method verifies if a move in the desired direction is valid.
+     * @param board The board.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return <code>true</code> if the move is valid,
+     * <code>false</code> otherwise.
+     */
+    public static boolean isValid(long board, int m) {
+        return move(board, m) != board;
+    }
+
+    /**
+     * Transpose the board, swapping the x and y coords of each cell. This way
+     * the columns of the grid are packed as lines, and vertical moves can be
+     * done as horizontal moves.
+     * @param board The board.
+     * @return The transposed board.
+     */
+    public static long transpose(long board) {
+        long a1 = board & 0xF0F00F0FF0F00F0FL;
+        long a2 = board & 0x0000F0F00000F0F0L;
+        long a3 = board & 0x0F0F00000F0F0000L;
+        long a = a1 | (a2 << 12) | (a3 >>> 12);
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    /**
+     * Return the points earned with the merges of a move in the desired
+     * direction.
+     * @param board The board.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return Sum of the values of the merged tiles.
+     */
+    public static int score(long board, int m) {
+        if (m == 0 || m == 2)
+            board = transpose(board);
+        return RowTables.score(row(board, 0)) + RowTables.score(row(board, 1))
+                + RowTables.score(row(board, 2)) + RowTables.score(row(board, 3));
+    }
+
+    /**
+     * Return a line of the board.
+     * @param board The board.
+     * @param y Index of the line.
+     * @return The line, packed in the lowest 16 bits.
+     */
+    public static int row(long board, int y) {
+        return (int) ((board >>> (16 * y)) & ROW_MASK);
+    }
+
+    /**
+     * Move each line of the board towards x = 0.
+     * @param board The board.
+     * @return The moved board.
+     */
+    private static long moveLeft(long board) {
+        return (long) RowTables.left(row(board, 0))
+                | (long) RowTables.left(row(board, 1)) << 16
+                | (long) RowTables.left(row(board, 2)) << 32
+                | (long) RowTables.left(row(board, 3)) << 48;
+    }
+
+    /**
+     * Move each line of the board towards x = 3.
+     * @param board The board.
+     * @return The moved board.
+     */
+    private static long moveRight(long board) {
+        return (long) RowTables.right(row(board, 0))
+                | (long) RowTables.right(row(board, 1)) << 16
+                | (long) RowTables.right(row(board, 2)) << 32
+                | (long) RowTables.right(row(board, 3)) << 48;
+    }
+
+    /**
+     * Return a string representation of the board, in the same format used
+     * by MyGriglia.
+     * @param board The board.
+     * @return A string representing the board.
+     */
+    public static String toString(long board) {
+        String out = "";
+        for (int j = 0; j < GRID_SIZE; j++ ) {       // rows
+            for (int i = 0; i < GRID_SIZE; i++) {    // column
+                int val = getValue(board, i, j);
+                out += "\t" + ((val == -1) ? "0" : val);
+            }
+            out += "\n";
+        }
+        return out;
+    }
+}
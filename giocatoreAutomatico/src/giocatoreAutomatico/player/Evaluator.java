@@ -0,0 +1,175 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+/**
+ * This class provides the positional evaluation of a BitBoard through
+ * precomputed tables. The score of a position is the sum of the value of each
+ * tile, multiplied by a weight which decreases exponentially along a snake
+ * shaped path on the grid.
+ * The main path is evaluated through a table for each line of the grid,
+ * indexed by the 16 bits of the line, so a board needs only 4 lookups. The 8
+ * symmetric paths used by the multi path evaluation are evaluated through
+ * smaller tables, one for each path, indexed by cell and tile exponent.
+ * The evaluation of the main path can also be updated incrementally: after a
+ * horizontal move only the lines which changed are scored again, and a new
+ * tile adds the score of its cell.
+ * The weights are powers of the base and the tiles are powers of 2, so with a
+ * base which is a power of 2 each sum is exact, and the tables give the same
+ * scores of the cell by cell computation.
+ * @author Martino Pilia
+ */
+public final class Evaluator {
+
+    /** Number of paths used by the multi path evaluation. */
+    public static final int PATHS = 8;
+
+    private static final int EXPONENTS = BitBoard.MAX_EXPONENT + 1;
+
+    private final double[] weights; // main path, by cell
+    private final double[][] rows; // main path, by line and line value
+    private final double[][] cells; // each path, by cell and exponent
+
+    /**
+     * This is the constructor for the class.
+     * @param base Base of the exponential decrease of the weights along the
+     * path.
+     */
+    public Evaluator(double base) {
+        int n = BitBoard.GRID_SIZE;
+        int last = BitBoard.CELLS - 1;
+        int[][] paths = new int[PATHS][BitBoard.CELLS];
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int cell = BitBoard.index(x, y);
+                int down = n * x + (x % 2 == 0 ? y : n - 1 - y);
+                int up = n * x + (x % 2 != 0 ? y : n - 1 - y);
+                int downT = n * y + (y % 2 == 0 ? x : n - 1 - x);
+                int upT = n * y + (y % 2 != 0 ? x : n - 1 - x);
+                paths[0][cell] = down;         // path 1
+                paths[1][cell] = last - down;  // path 2 (opposite direction)
+                paths[2][cell] = downT;        // path 3 (transpose of path 1)
+                paths[3][cell] = last - downT; // path 4 (transpose of path 2)
+                paths[4][cell] = up;           // path 5 (inverse of path 1)
+                paths[5][cell] = last - up;    // path 6 (inverse of path 2)
+                paths[6][cell] = upT;          // path 7 (inverse of path 3)
+                paths[7][cell] = last - upT;   // path 8 (inverse of path 4)
+            }
+        }
+
+        this.cells = new double[PATHS][BitBoard.CELLS * EXPONENTS];
+        for (int p = 0; p < PATHS; p++) {
+            for (int cell = 0; cell < BitBoard.CELLS; cell++) {
+                double weight = Math.pow(base, paths[p][cell]);
+                for (int exp = 1; exp < EXPONENTS; exp++)
+                    cells[p][cell * EXPONENTS + exp] = (1 << exp) * weight;
+            }
+        }
+
+        this.weights = new double[BitBoard.CELLS];
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            weights[cell] = Math.pow(base, paths[0][cell]);
+
+        this.rows = new double[n][RowTables.ROWS];
+        for (int y = 0; y < n; y++) {
+            for (int row = 0; row < RowTables.ROWS; row++) {
+                double score = 0;
+                for (int x = 0; x < n; x++) {
+                    int exp = (row >>> (4 * x)) & 0xF;
+                    score += cells[0][BitBoard.index(x, y) * EXPONENTS + exp];
+                }
+                rows[y][row] = score;
+            }
+        }
+    }
+
+    /**
+     * Return the weight of a cell in the main path.
+     * @param index Index of the cell.
+     * @return The weight of the cell.
+     */
+    public double weight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Evaluate a board along the main path, starting from the cell (0, 0)
+     * and going down the even columns and up the odd ones.
+     * @param board The board.
+     * @return Value for the position.
+     */
+    public double evaluate(long board) {
+        return rows[0][BitBoard.row(board, 0)] + rows[1][BitBoard.row(board, 1)]
+                + rows[2][BitBoard.row(board, 2)] + rows[3][BitBoard.row(board, 3)];
+    }
+
+    /**
+     * Return the score added to the main path evaluation by a tile.
+     * @param index Index of the cell of the tile.
+     * @param exp Exponent of the tile.
+     * @return The score of the tile.
+     */
+    public double tile(int index, int exp) {
+        return cells[0][index * EXPONENTS + exp];
+    }
+
+    /**
+     * Update the main path evaluation of a board after a move. After a
+     * horizontal move only the lines which changed are scored again; a
+     * vertical move can change every line, so the board is scored again
+     * through the line tables, which costs less than transposing it.
+     * @param evaluation Evaluation of the board before the move.
+     * @param board The board before the move.
+     * @param newBoard The board after the move.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return Evaluation of the board after the move.
+     */
+    public double update(double evaluation, long board, long newBoard, int m) {
+        if (m == 0 || m == 2)
+            return evaluate(newBoard);
+        long changed = board ^ newBoard;
+        for (int y = 0; y < BitBoard.GRID_SIZE; y++) {
+            if (BitBoard.row(changed, y) != 0)
+                evaluation += rows[y][BitBoard.row(newBoard, y)]
+                        - rows[y][BitBoard.row(board, y)];
+        }
+        return evaluation;
+    }
+
+    /**
+     * Evaluate a board along each of the 8 symmetric paths, and return the
+     * best value.
+     * @param board The board.
+     * @return Value for the position.
+     */
+    public double multiPathEvaluate(long board) {
+        double maxEvaluation = -1;
+        for (int p = 0; p < PATHS; p++) {
+            double[] table = cells[p];
+            double evaluation = 0;
+            for (int cell = 0; cell < BitBoard.CELLS; cell++) {
+                int exp = (int) (board >>> (4 * cell)) & 0xF;
+                evaluation += table[cell * EXPONENTS + exp];
+            }
+            if (evaluation > maxEvaluation)
+                maxEvaluation = evaluation;
+        }
+        return maxEvaluation;
+    }
+}
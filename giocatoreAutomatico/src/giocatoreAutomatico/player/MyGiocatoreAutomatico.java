@@ -20,20 +20,66 @@ package giocatoreAutomatico.player;
 
 import giocatoreAutomatico.*;
 
+import game2048.ArrayGrid;
 import game2048.Location;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This class implements the interface GiocatoreAutomatico, providing objects
- * able to play 2048. This player is able to play with 3 differents styles. The
+ * able to play 2048. This player is able to play with 4 differents styles. The
  * default style uses a search algorithm to evaluate the position. The search 
  * depth and the playing style are chosen passing opportune values through the 
  * grid. The style should saved in Location(-1, -1) (1 = random, 2 = blind,
- * 3 = minimax) and the search depth in Location(-1, -2) (int value for depth).
+ * 3 = minimax, 4 = expectimax) and the search depth in Location(-1, -2) 
+ * (int value for depth). A time budget in milliseconds can be passed in
+ * Location(-1, -3): in that case the search is deepened one ply at a time, 
+ * and the move found by the deepest search completed within the budget is
+ * played, ignoring the depth value.
  * If the GUI does not provide theese values or provides invalid values,
  * default settings are used (minimax with depth = 6).
+ * The searches use a transposition table with 2^20 slots by default;
+ * the size can be changed through the system property
+ * <code>giocatoreAutomatico.tableBits</code> (base 2 logarithm of the size).
+ * The expectimax search stops expanding a branch when its probability drops
+ * below 0.001; the threshold can be changed through the system property
+ * <code>giocatoreAutomatico.probabilityThreshold</code>.
+ * The legal moves at the root of the searches are scored at the same time on
+ * a pool with a thread for each processor; the number of threads can be set
+ * through the system property <code>giocatoreAutomatico.threads</code>, and a
+ * value of 1 searches on the calling thread only. The pool is created with
+ * the first player and shared by all the players, whose searches would
+ * otherwise compete for the same processors. With more than one thread,
+ * the expectimax may reuse scores of positions reached with a different
+ * probability in a different order, so reproducible runs need 1 thread.
+ * The searches prune the moves and the tile addings which cannot change the
+ * choice, using upper bounds of the scores based on the sum of the tiles
+ * (alpha-beta cutoffs in the minimax, Star1 cutoffs at the chance nodes of the
+ * expectimax). The pruned search chooses the same moves visiting fewer
+ * nodes; it can be disabled setting the system property
+ * <code>giocatoreAutomatico.pruning</code> to <code>false</code>, in order to
+ * compare the node counts.
+ * Setting the system property <code>giocatoreAutomatico.symmetric</code> to
+ * <code>true</code>, the searches evaluate the positions along the 8
+ * symmetric paths of Evaluator.multiPathEvaluate(), so two positions which
+ * are images of each other under a rotation or a reflection of the grid have
+ * the same score; sibling moves and tile addings leading to symmetric
+ * positions are then searched only once.
+ * The grid size is read from each grid, from 3 to 8. The grids other than
+ * the 4x4 one, or holding a 32768 tile (which the BitBoard cannot merge) or
+ * a larger one, are searched on a WideBoard by a WideSearch, with the
+ * evaluation along the main path and without the transposition table, the
+ * pruning and the thread pool.
+ * A search is aborted as soon as the thread calling prossimaMossa() is
+ * interrupted, so a caller can cancel a search whose result is not needed
+ * anymore; the move returned by an aborted search is the best one found so
+ * far, and should be discarded.
  * @author martino
  */
 public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
@@ -41,45 +87,84 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
     private int searchDepth;
     private int gridSize;
     private double evalBase;
-    private int mode;
     private int step;
     private final Random rand;
     private final int defaultStyle;
     private final int defaultDepth;
     private final Location PLAYING_STYLE_LOCATION;
     private final Location DEPTH_LOCATION;
+    private final Location TIME_BUDGET_LOCATION;
+    private final int MAX_ITERATIVE_DEPTH = 30;
+    private static ForkJoinPool sharedPool; // created by the first player
+    private final TranspositionTable table;
+    private final double probabilityThreshold;
+    private final ForkJoinPool pool;
+    private int lastStyle;
+    private volatile long deadline; // System.nanoTime() limit, 0 for none
+    private volatile boolean aborted;
+    private volatile Thread caller; // thread of the current search
+    private final boolean pruning;
+    private final double PRUNING_MARGIN = 1e-9; // against rounding errors
+    private final int[] spawnOrder; // cells by increasing evaluation weight
+    private final LongAdder nodes = new LongAdder();
+    private final Evaluator evaluator;
+    private final boolean symmetric;
     
     private final Logger log = Logger.getGlobal();
     
-    private MyGriglia griglia;
+    private long currentBoard; // grid of the current move
+    private boolean wide; // current grid held in wideBoard, not a BitBoard
+    private WideSearch wideSearch; // searches for the last wide grid size
+    private long[] wideBoard;
+    private long[] wideScratch;
+    private int legalMask; // legal moves in the current grid, bit m for move m
     
     /**
-     * This is the constructor for the class. The player is initialized with a
-     * void grid.
+     * This is the constructor for the class.
      */
     public MyGiocatoreAutomatico() {
         this.defaultDepth = 6;
         this.defaultStyle = 3;
         this.step = 2;
-        this.mode = 3; // provisional hard-coded selector
-        this.gridSize = 4; // provisional hard-coded grid size
+        this.gridSize = BitBoard.GRID_SIZE; // read from each grid
         this.evalBase = 0.25; // provisional
-        this.DEPTH_LOCATION = new Location(-1, -2);
-        this.PLAYING_STYLE_LOCATION = new Location(-1, -1);
-        this.griglia = new MyGriglia();
+        this.DEPTH_LOCATION = Location.of(-1, -2);
+        this.PLAYING_STYLE_LOCATION = Location.of(-1, -1);
+        this.TIME_BUDGET_LOCATION = Location.of(-1, -3);
         this.rand = new Random();
+        this.table = new TranspositionTable(
+                Integer.getInteger("giocatoreAutomatico.tableBits", 20));
+        this.probabilityThreshold = Double.parseDouble(System.getProperty(
+                "giocatoreAutomatico.probabilityThreshold", "0.001"));
+        int threads = Integer.getInteger("giocatoreAutomatico.threads",
+                Runtime.getRuntime().availableProcessors());
+        this.pool = threads > 1 ? sharedPool(threads) : null;
+        this.pruning = Boolean.parseBoolean(System.getProperty(
+                "giocatoreAutomatico.pruning", "true"));
+        this.evaluator = new Evaluator(evalBase);
+        this.symmetric = Boolean.parseBoolean(System.getProperty(
+                "giocatoreAutomatico.symmetric", "false"));
+        this.spawnOrder = new int[BitBoard.CELLS];
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            int rank = 0; // number of cells with a lower weight
+            for (int j = 0; j < BitBoard.CELLS; j++) {
+                if (evaluator.weight(j) < evaluator.weight(i))
+                    rank++;
+            }
+            spawnOrder[rank] = i;
+        }
 	if (log.getLevel() == null)
 		log.setLevel(Level.OFF);
     }
     
     /**
-     * This is the constructor for the class. The player is initialized with 
-     * the provided grid.
+     * This is the constructor for the class. The player keeps no grid: each
+     * move is searched on the grid passed to prossimaMossa(), so the grid
+     * provided here is not used.
      * @param g Grid for the player.
      */
     public MyGiocatoreAutomatico(Griglia g) {
         this();
-        this.griglia.putAll(g);
     }
     
     /* With Java8 static method, this implementation is not needed. */
@@ -96,45 +181,168 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
     @Override
     public int prossimaMossa(Griglia g){
         
-        this.griglia = new MyGriglia();
-        this.griglia.putAll(g);
+        caller = Thread.currentThread();
+        deadline = 0;
+        aborted = false; // a previous search may have been interrupted
+        gridSize = g instanceof ArrayGrid
+                ? ((ArrayGrid) g).getGridSize() : gridSizeOf(g);
+        wide = gridSize != BitBoard.GRID_SIZE
+                || maxTile(g) >= 1 << BitBoard.MAX_EXPONENT;
+        if (wide) { // other grid size, or tiles the BitBoard cannot merge
+            WideBoard boards = WideBoard.of(gridSize);
+            if (wideSearch == null || wideSearch.getGridSize() != gridSize) {
+                wideSearch = new WideSearch(boards, evalBase,
+                        probabilityThreshold);
+                wideBoard = boards.newBoard();
+                wideScratch = boards.newBoard();
+            }
+            if (g instanceof ArrayGrid) {
+                ArrayGrid grid = (ArrayGrid) g;
+                boards.clear(wideBoard);
+                for (int i = 0; i < boards.cells(); i++) {
+                    if (grid.getCell(i) != 0)
+                        boards.setExponent(wideBoard, i,
+                                WideBoard.exponentOf(grid.getCell(i)));
+                }
+                legalMask = grid.legalMoves();
+            } else {
+                boards.fromGriglia(g, wideBoard);
+                legalMask = boards.legalMoves(wideBoard, wideScratch);
+            }
+        } else if (g instanceof ArrayGrid) { // primitive grid, no boxing nor hashing
+            ArrayGrid grid = (ArrayGrid) g;
+            currentBoard = grid.toBoard();
+            legalMask = grid.legalMoves();
+        } else {
+            currentBoard = BitBoard.fromGriglia(g);
+            legalMask = 0;
+            for (int m = 0; m < 4; m++) {
+                if (BitBoard.isValid(currentBoard, m))
+                    legalMask |= 1 << m;
+            }
+        }
         
-        log.log(Level.INFO, "Grid size: {0}", griglia.size());
+        log.log(Level.INFO, "Grid size: {0}", g.size());
         
         int style = 0;
         
-        if (griglia.get(PLAYING_STYLE_LOCATION) != null)
-            style = griglia.get(PLAYING_STYLE_LOCATION);
+        if (g.get(PLAYING_STYLE_LOCATION) != null)
+            style = g.get(PLAYING_STYLE_LOCATION);
         else
             style = defaultStyle; // default style is minimax
         
+        if (g.get(DEPTH_LOCATION) != null
+                && g.get(DEPTH_LOCATION) > 0)
+            searchDepth = g.get(DEPTH_LOCATION);
+        else
+            searchDepth = defaultDepth;
+        
+        int timeBudget = 0; // milliseconds, 0 for a fixed depth search
+        if (g.get(TIME_BUDGET_LOCATION) != null)
+            timeBudget = g.get(TIME_BUDGET_LOCATION);
+        
+        if (style != lastStyle) {
+            table.clear(); // scores of different searches are not comparable
+            lastStyle = style;
+        }
+        
         int dir; // value for the move selected by AI
         switch (style) {
             case 1: 
                 do {
                     dir = this.nextMoveRand();
-                } while (!griglia.isValida(dir));
+                } while (!isValida(dir));
                 break;
             case 2: 
                 dir = this.nextMoveBlind(); 
                 break;
+            case 4:
+                if (wide) {
+                    dir = this.nextMoveWide(4, searchDepth, timeBudget);
+                    break;
+                }
+                if (timeBudget > 0) {
+                    dir = this.nextMoveIterative(currentBoard, 4, timeBudget);
+                    break;
+                }
+                log.log(Level.INFO, "Depth: {0}", searchDepth);
+                dir = this.nextMoveSearch(currentBoard, 4, searchDepth);
+                break;
             default: 
-                if (this.griglia.get(DEPTH_LOCATION) != null
-                        && this.griglia.get(DEPTH_LOCATION) > 0)
-                    searchDepth = this.griglia.get(DEPTH_LOCATION);
-                else
-                    searchDepth = defaultDepth;
+                if (wide) {
+                    dir = this.nextMoveWide(3, searchDepth, timeBudget);
+                    break;
+                }
+                if (timeBudget > 0) {
+                    dir = this.nextMoveIterative(currentBoard, 3, timeBudget);
+                    break;
+                }
                 log.log(Level.INFO, "Depth: {0}", searchDepth);
-                dir = this.nextMoveMinimax(griglia, searchDepth);
+                dir = this.nextMoveSearch(currentBoard, 3, searchDepth);
                 break;
             //default: throw new IllegalStateException("Wrong value!");
         }
-        //System.out.println("" + dir + griglia.isValida(dir));
-        griglia.move(dir);
-        log.log(Level.INFO, "Griglia:\n{0}", griglia.toString());
+        if (wide) {
+            WideBoard boards = WideBoard.of(gridSize);
+            boards.move(wideBoard, dir, wideScratch);
+            log.log(Level.INFO, "Griglia:\n{0}", boards.toString(wideScratch));
+        } else {
+            log.log(Level.INFO, "Griglia:\n{0}",
+                    BitBoard.toString(BitBoard.move(currentBoard, dir)));
+        }
         return dir;
     }
     
+    /**
+     * Return the size of a grid which is not an ArrayGrid, as the number of
+     * columns holding a cell; the reserved locations, with negative
+     * coords, are not counted.
+     * @param g The grid.
+     * @return The grid size.
+     */
+    private int gridSizeOf(Griglia g) {
+        int size = 0;
+        for (Location l : g.keySet()) {
+            if (l.getX() >= 0 && l.getY() >= 0)
+                size = Math.max(size, l.getX() + 1);
+        }
+        return size;
+    }
+    
+    /**
+     * Return the highest tile of the grid.
+     * @param g The grid.
+     * @return The value of the highest tile, <code>-1</code> for an empty
+     * grid.
+     */
+    private int maxTile(Griglia g) {
+        int max = -1;
+        if (g instanceof ArrayGrid) {
+            ArrayGrid grid = (ArrayGrid) g;
+            for (int i = 0; i < gridSize * gridSize; i++)
+                max = Math.max(max, grid.getCell(i));
+            return max;
+        }
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                Integer val = g.get(Location.of(x, y));
+                if (val != null)
+                    max = Math.max(max, val);
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * This method verifies if a move is valid in the current grid.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return <code>true</code> if the move is valid,
+     * <code>false</code> otherwise.
+     */
+    private boolean isValida(int m) {
+        return (legalMask & (1 << m)) != 0;
+    }
+    
     /**
      * This method provides a random move.
      * @return 0=ALTO; 1=DX; 2=BASSO; 3=SX
@@ -150,60 +358,60 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
     private int nextMoveBlind() {
         switch (step) {
             case 0: 
-                if (griglia.isValida(3)) {
+                if (isValida(3)) {
                     step = 1;
                     return 3;
                 }
-                if (griglia.isValida(1)) {
+                if (isValida(1)) {
                     step = 2;
                     return 1;
                 }
-                if (griglia.isValida(2)) {
+                if (isValida(2)) {
                     step = 3;
                     return 2;
                 }
                 step = 1; // in order to return down
                 return 0;
             case 1:
-                if (griglia.isValida(2)) {
+                if (isValida(2)) {
                     step = 2;
                     return 2;
                 }
-                if (griglia.isValida(3)) {
+                if (isValida(3)) {
                     step = 1;
                     return 3;
                 }
-                if (griglia.isValida(1)) {
+                if (isValida(1)) {
                     step = 3;
                     return 1;
                 }
                 step = 4; // unnormal!
                 return 0;
             case 2:
-                if (griglia.isValida(1)) {
+                if (isValida(1)) {
                     step = 3;
                     return 1;
                 }
-                if (griglia.isValida(3)) {
+                if (isValida(3)) {
                     step = 1;
                     return 3;
                 }
-                if (griglia.isValida(2)) {
+                if (isValida(2)) {
                     step = 3;
                     return 2;
                 }
                 step = 1; // in order to return down
                 return 0;
             case 3:
-                if (griglia.isValida(2)) {
+                if (isValida(2)) {
                     step = 0;
                     return 2;
                 }
-                if (griglia.isValida(3)) {
+                if (isValida(3)) {
                     step = 1;
                     return 3;
                 }
-                if (griglia.isValida(1)) {
+                if (isValida(1)) {
                     step = 3;
                     return 1;
                 }
@@ -222,29 +430,29 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
         switch (step) {
             case 2: // try down first
                 step = 1;
-                if (griglia.isValida(2)) 
+                if (isValida(2)) 
                     return 2;
-                if (griglia.isValida(1))
+                if (isValida(1))
                     return 1;
-                if (griglia.isValida(3)) {
+                if (isValida(3)) {
                     step = 2; // the next try will be for down
                     return 3;
                 }
-                if (griglia.isValida(0)) {
+                if (isValida(0)) {
                     step = 2; // the next try will be for down
                     return 0;
                 }
             case 1: // try right first
                 step = 2;
-                if (griglia.isValida(1)) 
+                if (isValida(1)) 
                     return 1;
-                if (griglia.isValida(2))
+                if (isValida(2))
                     return 2;
-                if (griglia.isValida(3)) {
+                if (isValida(3)) {
                     step = 2; // the next try will be for down
                     return 3;
                 }
-                if (griglia.isValida(0)) {
+                if (isValida(0)) {
                     step = 2; // the next try will be for down
                     return 0;
                 }
@@ -253,90 +461,297 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
     }
     
     /**
-     * This method provides a move through a simple implementation of a search
-     * algorithm, similar to a minimax.
-     * @param grid The current grid.
+     * This method provides a move through a search algorithm: a simple
+     * implementation of a search similar to a minimax (style 3), or an 
+     * expectimax search (style 4). Differently from the minimax, the
+     * expectimax expands each possible tile adding and weights it with
+     * its probability (0.9 for a 2, 0.1 for a 4, each free cell with the same
+     * chances).
+     * @param board The current grid, packed in a BitBoard.
+     * @param style 3 = minimax, 4 = expectimax
      * @param depth Depth for the search.
      * @return 0=ALTO; 1=DX; 2=BASSO; 3=SX
      */
-    private int nextMoveMinimax(MyGriglia grid, int depth) {
-        double[] res; // move, score
-        res = this.recursiveSearch(grid, depth, depth, 0.9);
+    private int nextMoveSearch(long board, int style, int depth) {
+        double[] res = this.search(board, style, depth);
+        log.log(Level.INFO, "Transposition table: {0} hits, {1} misses",
+                new Object[]{table.getHits(), table.getMisses()});
+        return (int) res[0];
+    }
+    
+    /**
+     * This method provides a move through an anytime search. The search is
+     * repeated with increasing depth, one ply at a time, until the time
+     * budget runs out, and the move found by the deepest completed search is
+     * returned. The search with depth 1 is always completed.
+     * @param board The current grid, packed in a BitBoard.
+     * @param style 3 = minimax, 4 = expectimax
+     * @param timeBudget Time budget for the move, in milliseconds.
+     * @return 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     */
+    private int nextMoveIterative(long board, int style, int timeBudget) {
+        int legalMoves = Integer.bitCount(legalMask);
+        
+        double[] res = this.search(board, style, 1);
+        int depth = 1;
+        if (legalMoves > 1) { // otherwise there is nothing to choose
+            deadline = System.nanoTime() + timeBudget * 1000000L;
+            while (depth < MAX_ITERATIVE_DEPTH) {
+                double[] next = this.search(board, style, depth + 1);
+                if (aborted)
+                    break; // incomplete search, keep the previous result
+                res = next;
+                depth++;
+            }
+            deadline = 0;
+            aborted = false;
+        }
+        log.log(Level.INFO, "Depth reached in {0} ms: {1}",
+                new Object[]{timeBudget, depth});
         return (int) res[0];
     }
     
+    /**
+     * This method provides a move through a search on a grid which does not
+     * fit in a BitBoard. The search works on a WideBoard, without the
+     * transposition table, the pruning and the thread pool of the BitBoard
+     * searches, which are tuned for the 4x4 grid; it evaluates the grid
+     * along the main path only.
+     * @param style 3 = minimax, 4 = expectimax
+     * @param depth Depth for the search.
+     * @param timeBudget Time budget for the move, in milliseconds, or 0 for
+     * a fixed depth search.
+     * @return 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     */
+    private int nextMoveWide(int style, int depth, int timeBudget) {
+        int dir;
+        if (timeBudget > 0 && Integer.bitCount(legalMask) > 1)
+            dir = wideSearch.searchIterative(wideBoard, style, timeBudget,
+                    MAX_ITERATIVE_DEPTH);
+        else
+            dir = wideSearch.search(wideBoard, style,
+                    timeBudget > 0 ? 1 : depth);
+        log.log(Level.INFO, "Nodes visited on a {0}x{0} grid: {1}",
+                new Object[]{gridSize, wideSearch.getNodeCount()});
+        return dir;
+    }
+    
+    /**
+     * This method searches the game tree with the desired algorithm and
+     * depth.
+     * @param board The current grid, packed in a BitBoard.
+     * @param style 3 = minimax, 4 = expectimax
+     * @param depth Depth for the search.
+     * @return An array containing the best move in position <code>0</code>
+     * and it's relative score in position <code>1</code>.
+     */
+    private double[] search(long board, int style, int depth) {
+        table.newSearch();
+        nodes.reset();
+        double[] res;
+        if (style == 4)
+            res = this.searchRoot(board, (newBoard, alpha) -> depth > 1
+                    ? this.rootChanceNode(newBoard, this.evaluate(newBoard),
+                            depth - 1, depth, alpha)
+                    : this.evaluate(newBoard));
+        else
+            res = this.searchRoot(board, (newBoard, alpha) ->
+                    this.minimaxScore(newBoard, this.evaluate(newBoard),
+                            depth, depth, 0.9, alpha));
+        log.log(Level.INFO, "Nodes visited with depth {0}: {1} (pruning: {2})",
+                new Object[]{depth, nodes.sum(), pruning});
+        return res;
+    }
+    
+    /**
+     * Check if the time budget of the current search is over, or the thread
+     * calling the search has been interrupted. Once the search is aborted,
+     * each node returns immediately and its result is not stored in the
+     * transposition table.
+     * @return <code>true</code> if the search must be aborted,
+     * <code>false</code> otherwise.
+     */
+    private boolean outOfTime() {
+        if (aborted)
+            return true;
+        long limit = deadline;
+        Thread thread = caller;
+        if ((limit != 0 && System.nanoTime() - limit > 0)
+                || (thread != null && thread.isInterrupted()))
+            aborted = true;
+        return aborted;
+    }
+    
+    /**
+     * Return the threshold below which a score can be pruned, given the score
+     * to beat. A small margin is left, so a move is pruned only when its
+     * score is certainly lower, even with the rounding of the sums.
+     * @param alpha Score to beat.
+     * @return The threshold for the pruning.
+     */
+    private double limit(double alpha) {
+        return alpha - PRUNING_MARGIN * Math.abs(alpha);
+    }
+    
+    /**
+     * Return the number of nodes visited by the last search (positions
+     * before a move and chance nodes, including the ones found in the
+     * transposition table).
+     * @return Number of visited nodes.
+     */
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+    
+    /**
+     * Return the pool shared by the players, creating it at the first call.
+     * Its worker threads are daemon threads, so the pool does not need to be
+     * shut down.
+     * @param threads Number of threads of the pool.
+     * @return The shared pool.
+     */
+    private static synchronized ForkJoinPool sharedPool(int threads) {
+        if (sharedPool == null)
+            sharedPool = new ForkJoinPool(threads);
+        return sharedPool;
+    }
+    
+    /**
+     * Return the transposition table used by the search, in order to
+     * read its hit and miss counters.
+     * @return The transposition table of the player.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+    
+    /**
+     * This method searches the root of the game tree. When more than one
+     * thread is available, the legal moves are scored at the same time on the
+     * thread pool of the player; the scores are then compared in the move
+     * order, as in the single thread search, so the choice does not depend on
+     * which task ends first.
+     * When the moves are searched one by one, the best score found so far is
+     * passed to the search of the following moves, in order to prune them.
+     * @param grid The current grid.
+     * @param moveScore Function returning the score of the grid obtained
+     * with a move.
+     * @return An array containing the best move in position <code>0</code>
+     * and it's relative score in position <code>1</code>.
+     */
+    private double[] searchRoot(long grid, MoveScore moveScore) {
+        long[] newBoards = new long[4];
+        long[] canonical = new long[4];
+        double[] scores = new double[4];
+        List<ForkJoinTask<Double>> tasks = new ArrayList<>(4);
+        
+        for (int m = 0; m < 4; m++) {
+            newBoards[m] = BitBoard.move(grid, m);
+            if (newBoards[m] == grid) // invalid move
+                continue;
+            if (this.symmetricSibling(newBoards[m], canonical, m)) {
+                newBoards[m] = grid; // same score of a previous move
+                continue;
+            }
+            final long newBoard = newBoards[m];
+            if (pool != null)
+                tasks.add(pool.submit(() -> moveScore.score(newBoard,
+                        Double.NEGATIVE_INFINITY)));
+        }
+        
+        double bestScore = -1;
+        double bestMove = 0;
+        boolean moved = false;
+        for (int m = 0; m < 4; m++) {
+            if (newBoards[m] == grid)
+                continue;
+            if (pool != null)
+                scores[m] = tasks.remove(0).join();
+            else
+                scores[m] = moveScore.score(newBoards[m], pruning && moved
+                        ? bestScore : Double.NEGATIVE_INFINITY);
+            if (!moved || scores[m] > bestScore) {
+                bestMove = m;
+                bestScore = scores[m];
+                moved = true;
+            }
+        }
+        double[] out = {bestMove, bestScore};
+        return out;
+    }
+    
+    /**
+     * Check if a move leads to a position symmetric to the one reached by a
+     * previous move. Without the symmetric evaluation no position is
+     * considered symmetric, since the scores of the images may differ.
+     * @param newBoard The grid after the move.
+     * @param canonical Canonical forms of the grids reached by the previous
+     * moves, updated with the new one.
+     * @param m Number of the move.
+     * @return <code>true</code> if the move can be skipped,
+     * <code>false</code> otherwise.
+     */
+    private boolean symmetricSibling(long newBoard, long[] canonical, int m) {
+        if (!symmetric)
+            return false;
+        canonical[m] = Symmetry.canonical(newBoard);
+        for (int i = 0; i < m; i++) {
+            if (canonical[i] == canonical[m])
+                return true;
+        }
+        return false;
+    }
+    
     /**
      * This is a recursive method used in the research for the best move. It 
      * tries all legal moves, and for each evaluates all the possible tile
      * addings in the next ply. It chooses the best move against the worst
-     * possible adding.
+     * possible adding. The grid is packed in a BitBoard, so each node of the
+     * search is a plain <code>long</code> value. The result of each node is
+     * stored in the transposition table, so a position reached through
+     * different move orders is searched only once.
+     * The moves which cannot score more than <code>alpha</code> are pruned.
+     * When all the moves are below <code>alpha</code> and some of them have
+     * been pruned, the exact score is unknown and the search returns
+     * <code>Double.NEGATIVE_INFINITY</code>.
+     * The evaluation of each grid is updated from the one of its parent,
+     * scoring again only the lines changed by the move.
      * @param grid The current grid.
+     * @param evaluation Evaluation of the current grid.
      * @param depth Depth for the search.
      * @param maxDepth Maximum depth search.
      * @param base Base for the exponential ammortization of the position score.
+     * @param alpha Score to beat (<code>Double.NEGATIVE_INFINITY</code> for
+     * no pruning).
      * @return An array containing the best move in position <code>0</code>
      * and it's relative score in position <code>1</code>.
      */
-    private double[] recursiveSearch(MyGriglia grid, int depth, int maxDepth, double base) {
+    private double[] recursiveSearch(long grid, double evaluation, int depth,
+            int maxDepth, double base, double alpha) {
+        if (this.outOfTime()) {
+            double[] out = {0, 0};
+            return out;
+        }
+        nodes.increment();
+        double[] cached = depth > 0 ? table.find(grid, depth, maxDepth) : null;
+        if (cached != null)
+            return cached;
+        
         double bestScore = -1;
         double bestMove = 0;
+        boolean pruned = false;
+        long[] canonical = new long[4];
         
         for (int m = 0; m < 4; m++) {
-            double score = 0;
-            if (grid.isValida(m)) {
-                MyGriglia newBoard = new MyGriglia(grid);
-                newBoard.move(m);
-
-                if (depth != 0) {
-                    double[] res = null;
-                    
-                    double pessimisticScore = -1;
-                    double worstScore = Double.MAX_VALUE;
-                    Location worstAdd = null;
-                    Integer worstValue = -1;
-                    
-                    // 2 random tile prevision
-                    for (Location l : newBoard.freeLocations()) {
-                        //System.out.print(l);
-                        MyGriglia newBoardAdded = new MyGriglia(newBoard);
-                        
-                        newBoardAdded.add(l, 2);
-                        
-                        pessimisticScore = this.evaluate(newBoardAdded);
-                        //System.out.println(" pessimistic score: " + pessimisticScore);
-                        
-                        if (pessimisticScore < worstScore) {
-                            worstScore = pessimisticScore;
-                            worstAdd = l;
-                            worstValue = 2;
-                        }
-                    }
-                    // 4 random tile prevision (gets the game worse...)
-                    /*for (Location l : newBoard.freeLocations()) {
-                        //System.out.print(l);
-                        MyGriglia newBoardAdded = new MyGriglia(newBoard);
-                        
-                        newBoardAdded.add(l, 4);
-                        
-                        pessimisticScore = this.evaluate(newBoardAdded);
-                        //System.out.println(" pessimistic score: " + pessimisticScore);
-                        
-                        if (pessimisticScore < worstScore) {
-                            worstScore = pessimisticScore;
-                            worstAdd = l;
-                            worstValue = 4;
-                        }
-                    }*/
-                    
-                    score = this.evaluate(newBoard);
-                    
-                    //System.out.println(newBoard.toString());
-                    newBoard.add(worstAdd, worstValue);
-                    //System.out.println("Adding in " + worstAdd.toString());
-
-                    res = this.recursiveSearch(newBoard, depth - 1, maxDepth, 0.9);
-                    score += res[1] * Math.pow(base, maxDepth - depth + 1);
-                }
+            long newBoard = BitBoard.move(grid, m);
+            if (newBoard != grid // valid move
+                    && !this.symmetricSibling(newBoard, canonical, m)) {
+                double score = this.minimaxScore(newBoard,
+                        this.evaluateMove(evaluation, grid, newBoard, m),
+                        depth, maxDepth, base,
+                        pruning ? Math.max(alpha, bestScore) : alpha);
+                if (score == Double.NEGATIVE_INFINITY)
+                    pruned = true;
 
                 if (score > bestScore) {
                     bestMove = m;
@@ -344,9 +759,302 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
                 }
             }
         }
+        if (pruned && bestScore < this.limit(alpha)) {
+            double[] out = {bestMove, Double.NEGATIVE_INFINITY};
+            return out;
+        }
+        if (depth > 0 && !aborted)
+            table.store(grid, depth, maxDepth, bestScore, (int) bestMove);
         double[] out = {bestMove, bestScore};
         return out;
     }
+    
+    /**
+     * This method computes the score of the grid obtained with a move in the
+     * minimax search: the evaluation of the grid, plus the ammortized score
+     * of the search after the worst possible adding.
+     * The evaluation of a grid is never greater than the sum of its tiles,
+     * which grows by 2 for each adding, so the search is skipped when even
+     * this upper bound cannot beat <code>alpha</code>. Since the evaluation
+     * is a weighted sum of the tiles, the worst adding is a 2 in the free cell
+     * with the lowest weight, and the other addings need no evaluation.
+     * Without pruning, each adding is evaluated adding the score of the new
+     * tile to the evaluation of the grid.
+     * @param newBoard The grid after the move.
+     * @param score Evaluation of the grid after the move.
+     * @param depth Depth for the search.
+     * @param maxDepth Maximum depth search.
+     * @param base Base for the exponential ammortization of the position score.
+     * @param alpha Score to beat (<code>Double.NEGATIVE_INFINITY</code> for
+     * no pruning).
+     * @return The score of the move, or <code>Double.NEGATIVE_INFINITY</code>
+     * if it's lower than <code>alpha</code> and it has been pruned.
+     */
+    private double minimaxScore(long newBoard, double score, int depth,
+            int maxDepth, double base, double alpha) {
+        if (depth == 0)
+            return 0;
+        
+        double limit = this.limit(alpha);
+        double weight = Math.pow(base, maxDepth - depth + 1);
+        if (limit > Double.NEGATIVE_INFINITY) {
+            int sum = BitBoard.tileSum(newBoard)
+                    + (BitBoard.emptyCount(newBoard) > 0 ? 2 : 0);
+            if (score + this.minimaxBound(sum, depth - 1, maxDepth, base) 
+                    * weight < limit)
+                return Double.NEGATIVE_INFINITY;
+        }
+        
+        double pessimisticScore = -1;
+        double worstScore = Double.MAX_VALUE;
+        int worstAdd = -1;
+        int worstValue = -1;
+
+        // 2 random tile prevision
+        int fixed = symmetric ? Symmetry.stabilizer(newBoard) : Symmetry.IDENTITY;
+        for (int k = 0; pruning && !symmetric && k < BitBoard.CELLS; k++) {
+            if (BitBoard.getExponent(newBoard, spawnOrder[k]) == 0) {
+                worstAdd = spawnOrder[k];
+                worstValue = 1;
+                break;
+            }
+        }
+        for (int l = 0; (!pruning || symmetric) && l < BitBoard.CELLS; l++) {
+            if (BitBoard.getExponent(newBoard, l) != 0
+                    || Symmetry.representative(l, fixed) != l)
+                continue;
+
+            pessimisticScore = this.evaluateAdd(score, newBoard, l, 1);
+
+            if (pessimisticScore < worstScore) {
+                worstScore = pessimisticScore;
+                worstAdd = l;
+                worstValue = 1;
+            }
+        }
+        // 4 random tile prevision (gets the game worse...)
+        /*for (int l = 0; l < BitBoard.CELLS; l++) {
+            if (BitBoard.getExponent(newBoard, l) != 0)
+                continue;
+
+            pessimisticScore = this.evaluateAdd(score, newBoard, l, 2);
+
+            if (pessimisticScore < worstScore) {
+                worstScore = pessimisticScore;
+                worstAdd = l;
+                worstValue = 2;
+            }
+        }*/
+
+        double added = score;
+        if (worstAdd != -1) {
+            added = this.evaluateAdd(score, newBoard, worstAdd, worstValue);
+            newBoard = BitBoard.setExponent(newBoard, worstAdd, worstValue);
+        }
+
+        double[] res = this.recursiveSearch(newBoard, added, depth - 1, 
+                maxDepth, 0.9, (limit - score) / weight);
+        if (res[1] == Double.NEGATIVE_INFINITY)
+            return Double.NEGATIVE_INFINITY;
+        return score + res[1] * weight;
+    }
+    
+    /**
+     * Upper bound of the score returned by the minimax search from a grid.
+     * @param sum Sum of the tiles of the grid.
+     * @param depth Depth for the search.
+     * @param maxDepth Maximum depth search.
+     * @param base Base for the exponential ammortization of the position score.
+     * @return The upper bound.
+     */
+    private double minimaxBound(int sum, int depth, int maxDepth, double base) {
+        double bound = 0;
+        for (int d = 1; d <= depth; d++)
+            bound = sum + 2 * (depth - d) + bound * Math.pow(base, maxDepth - d + 1);
+        return bound;
+    }
+
+    /**
+     * This is the recursive method implementing the move layer of the
+     * expectimax search. It tries all legal moves, and chooses the one with
+     * the best expected score over the tile addings following it.
+     * The moves which cannot score more than <code>alpha</code> are pruned,
+     * as in the minimax search.
+     * @param grid The current grid.
+     * @param evaluation Evaluation of the current grid.
+     * @param depth Number of moves left to the search.
+     * @param maxDepth Maximum depth search.
+     * @param probability Probability of reaching this position from the root.
+     * @param alpha Score to beat (<code>Double.NEGATIVE_INFINITY</code> for
+     * no pruning).
+     * @return An array containing the best move in position <code>0</code>
+     * and it's relative score in position <code>1</code>, which is
+     * <code>Double.NEGATIVE_INFINITY</code> if the position cannot beat
+     * <code>alpha</code>.
+     */
+    private double[] expectimaxSearch(long grid, double evaluation, int depth,
+            int maxDepth, double probability, double alpha) {
+        if (this.outOfTime()) {
+            double[] out = {0, 0};
+            return out;
+        }
+        nodes.increment();
+        double[] cached = depth > 1 ? table.find(grid, depth, maxDepth) : null;
+        if (cached != null)
+            return cached;
+        
+        double bestScore = 0; // score for a lost game
+        double bestMove = 0;
+        boolean moved = false;
+        boolean pruned = false;
+        long[] canonical = new long[4];
+        
+        for (int m = 0; m < 4; m++) {
+            long newBoard = BitBoard.move(grid, m);
+            if (newBoard == grid // invalid move
+                    || this.symmetricSibling(newBoard, canonical, m))
+                continue;
+            
+            double score = this.evaluateMove(evaluation, grid, newBoard, m);
+            if (depth > 1)
+                score = this.chanceNode(newBoard, score, depth - 1, maxDepth,
+                        probability,
+                        pruning && moved ? Math.max(alpha, bestScore) : alpha);
+            if (score == Double.NEGATIVE_INFINITY) {
+                pruned = true;
+                continue;
+            }
+            
+            if (!moved || score > bestScore) {
+                bestMove = m;
+                bestScore = score;
+                moved = true;
+            }
+        }
+        if (pruned && (!moved || bestScore < this.limit(alpha))) {
+            double[] out = {bestMove, Double.NEGATIVE_INFINITY};
+            return out;
+        }
+        if (depth > 1 && !aborted)
+            table.store(grid, depth, maxDepth, bestScore, (int) bestMove);
+        double[] out = {bestMove, bestScore};
+        return out;
+    }
+    
+    /**
+     * This is the recursive method implementing the chance layer of the
+     * expectimax search. It returns the average score over all the possible
+     * tile addings, weighted by their probability. When the probability of
+     * reaching the position drops below the threshold, the position is
+     * evaluated without going deeper.
+     * The score of each adding is between 0 (lost game) and the sum of the
+     * tiles reachable in the remaining plies, so the node is pruned as soon
+     * as the addings searched so far, with the upper bound for the others,
+     * cannot beat <code>alpha</code> (Star1 pruning). Each adding is searched
+     * with the score it needs in order to keep the node above 
+     * <code>alpha</code>.
+     * @param grid The current grid, after the move.
+     * @param evaluation Evaluation of the current grid.
+     * @param depth Number of moves left to the search.
+     * @param maxDepth Maximum depth search.
+     * @param probability Probability of reaching this position from the root.
+     * @param alpha Score to beat (<code>Double.NEGATIVE_INFINITY</code> for
+     * no pruning).
+     * @return The expected score of the position, or
+     * <code>Double.NEGATIVE_INFINITY</code> if it cannot beat
+     * <code>alpha</code>.
+     */
+    private double chanceNode(long grid, double evaluation, int depth,
+            int maxDepth, double probability, double alpha) {
+        nodes.increment();
+        int empty = BitBoard.emptyCount(grid);
+        if (probability < probabilityThreshold || empty == 0)
+            return evaluation;
+        
+        double limit = this.limit(alpha) * empty; // on the sum of the scores
+        double upper = BitBoard.tileSum(grid) + 4 * depth; // for each adding
+        double left = empty; // weight of the addings not searched yet
+        double prob2 = probability * 0.9 / empty;
+        double prob4 = probability * 0.1 / empty;
+        int fixed = symmetric ? Symmetry.stabilizer(grid) : Symmetry.IDENTITY;
+        double[] results = fixed != Symmetry.IDENTITY
+                ? new double[2 * BitBoard.CELLS] : null;
+        double score = 0;
+        for (int l = 0; l < BitBoard.CELLS; l++) {
+            if (BitBoard.getExponent(grid, l) != 0)
+                continue;
+            int rep = Symmetry.representative(l, fixed);
+            for (int exp = 1; exp <= 2; exp++) {
+                double weight = exp == 1 ? 0.9 : 0.1;
+                if (rep != l) { // symmetric to an adding already searched
+                    score += weight * results[2 * rep + exp - 1];
+                    left -= weight;
+                    continue;
+                }
+                double childAlpha = Double.NEGATIVE_INFINITY;
+                if (limit > Double.NEGATIVE_INFINITY) {
+                    if (score + left * upper < limit)
+                        return Double.NEGATIVE_INFINITY;
+                    left -= weight;
+                    childAlpha = (limit - score - left * upper) / weight;
+                }
+                double res = this.expectimaxSearch(BitBoard.setExponent(grid, l, exp),
+                        this.evaluateAdd(evaluation, grid, l, exp), depth, maxDepth,
+                        exp == 1 ? prob2 : prob4, childAlpha)[1];
+                if (res == Double.NEGATIVE_INFINITY)
+                    return Double.NEGATIVE_INFINITY;
+                if (results != null)
+                    results[2 * l + exp - 1] = res;
+                score += weight * res;
+            }
+        }
+        return score / empty;
+    }
+    
+    /**
+     * Variant of the chance layer used right below the root of the
+     * expectimax search. When more than one thread is available, each tile
+     * adding is searched in its own task, so even a single legal move keeps
+     * the pool busy. The scores are summed in the same order as in the single
+     * thread search.
+     * @param grid The current grid, after the move.
+     * @param evaluation Evaluation of the current grid.
+     * @param depth Number of moves left to the search.
+     * @param maxDepth Maximum depth search.
+     * @param alpha Score to beat, used only by the single thread search.
+     * @return The expected score of the position.
+     */
+    private double rootChanceNode(long grid, double evaluation, int depth,
+            int maxDepth, double alpha) {
+        int empty = BitBoard.emptyCount(grid);
+        if (pool == null || empty == 0)
+            return this.chanceNode(grid, evaluation, depth, maxDepth, 1, alpha);
+        
+        nodes.increment();
+        double prob2 = 0.9 / empty;
+        double prob4 = 0.1 / empty;
+        List<ForkJoinTask<Double>> tasks = new ArrayList<>(2 * empty);
+        for (int l = 0; l < BitBoard.CELLS; l++) {
+            if (BitBoard.getExponent(grid, l) != 0)
+                continue;
+            final long added2 = BitBoard.setExponent(grid, l, 1);
+            final long added4 = BitBoard.setExponent(grid, l, 2);
+            final double eval2 = this.evaluateAdd(evaluation, grid, l, 1);
+            final double eval4 = this.evaluateAdd(evaluation, grid, l, 2);
+            tasks.add(ForkJoinTask.adapt(() -> this.expectimaxSearch(added2,
+                    eval2, depth, maxDepth, prob2, Double.NEGATIVE_INFINITY)[1]));
+            tasks.add(ForkJoinTask.adapt(() -> this.expectimaxSearch(added4,
+                    eval4, depth, maxDepth, prob4, Double.NEGATIVE_INFINITY)[1]));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        
+        double score = 0;
+        for (int i = 0; i < tasks.size(); i += 2) {
+            score += 0.9 * tasks.get(i).join();
+            score += 0.1 * tasks.get(i + 1).join();
+        }
+        return score / empty;
+    }
 
     /**
      * This method implements the evaluation funtion. It's the core of the
@@ -356,32 +1064,45 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
      * of the value of each tile, multiplied by a coefficient. Each position
      * in the grid has a different coefficient, and the value of the 
      * coefficients decreases exponentially along a path, designed in order to 
-     * mantain the grid as clean as possible.
-     * @param newBoard Grid to evaluate.
+     * mantain the grid as clean as possible. The weighted sums are read from
+     * the precomputed tables of the Evaluator.
+     * @param newBoard Grid to evaluate, packed in a BitBoard.
      * @return Value for the position.
      */
-    private double evaluate(MyGriglia newBoard) {
-        double evaluation = 0;
-        int exp = 0; // exponent
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 == 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-                
-            }
-        }
-        return evaluation;
+    private double evaluate(long newBoard) {
+        if (symmetric)
+            return evaluator.multiPathEvaluate(newBoard);
+        return evaluator.evaluate(newBoard);
+    }
+    
+    /**
+     * Return the evaluation of a grid after a move, updating the evaluation
+     * of the grid before the move when possible.
+     * @param evaluation Evaluation of the grid before the move.
+     * @param grid The grid before the move.
+     * @param newBoard The grid after the move.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @return Value for the position.
+     */
+    private double evaluateMove(double evaluation, long grid, long newBoard, int m) {
+        if (symmetric)
+            return evaluator.multiPathEvaluate(newBoard);
+        return evaluator.update(evaluation, grid, newBoard, m);
+    }
+    
+    /**
+     * Return the evaluation of a grid after a tile adding, updating the
+     * evaluation of the grid before the adding when possible.
+     * @param evaluation Evaluation of the grid before the adding.
+     * @param grid The grid before the adding.
+     * @param index Index of the cell of the new tile.
+     * @param exp Exponent of the new tile.
+     * @return Value for the position.
+     */
+    private double evaluateAdd(double evaluation, long grid, int index, int exp) {
+        if (symmetric)
+            return evaluator.multiPathEvaluate(BitBoard.setExponent(grid, index, exp));
+        return evaluation + evaluator.tile(index, exp);
     }
     
     /**
@@ -394,11 +1115,11 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
         double evaluation = 0;
         int exp = 0; // exponent
         for (int i = 0; i < gridSize; i++) {
-            if (newBoard.get(new Location(0,3))
-                    .compareTo(newBoard.get(new Location(1,2))) < 0) {
+            if (newBoard.get(Location.of(0,3))
+                    .compareTo(newBoard.get(Location.of(1,2))) < 0) {
                 if (i % 2 == 0 & i != 2) {
                     for (int j = 0; j < gridSize; j++) {
-                        int val = newBoard.get(new Location(i, j));
+                        int val = newBoard.get(Location.of(i, j));
                         if (val != -1) {
                             evaluation += val * Math.pow(evalBase, exp);
                         }
@@ -406,7 +1127,7 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
                     }
                 } else {
                     for (int j = gridSize - 1; j >= 0; j--) {
-                        int val = newBoard.get(new Location(i, j));
+                        int val = newBoard.get(Location.of(i, j));
                         if (i == 1 && j == 3)
                             exp -= 2;
                         if (val != -1) {
@@ -420,7 +1141,7 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
             } else {
                 if (i % 2 == 0) {
                     for (int j = 0; j < gridSize; j++) {
-                        int val = newBoard.get(new Location(i, j));
+                        int val = newBoard.get(Location.of(i, j));
                         if (val != -1) {
                             evaluation += val * Math.pow(evalBase, exp);
                         }
@@ -428,7 +1149,7 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
                     }
                 } else {
                     for (int j = gridSize - 1; j >= 0; j--) {
-                        int val = newBoard.get(new Location(i, j));
+                        int val = newBoard.get(Location.of(i, j));
                         if (val != -1) {
                             evaluation += val * Math.pow(evalBase, exp);
                         }
@@ -442,200 +1163,20 @@ public class MyGiocatoreAutomatico implements GiocatoreAutomatico {
     }*/
     
     /**
-     * Attempt to implement an evaluation function based on more than one 
-     * possible path.
-     * @param newBoard Current grid.
-     * @return Value ofthe position.
+     * Function returning the score of the grid obtained with a move at the
+     * root of the search.
      */
-    private double multiPathEvaluate(MyGriglia newBoard) {
-        double evaluation = 0;
-        double maxEvaluation = -1;
-        int exp; // exponent
-        
-        // path 1
-        exp = 0;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 == 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 2 (same path, opposite direction)
-        exp = gridSize * gridSize - 1;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 == 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 3 (transpose of path 1)
-        exp = 0;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 == 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 4 (transpose of path 2)
-        exp = gridSize * gridSize - 1;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 == 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 5 (inverse of path 1)
-        exp = 0;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 != 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 6 (inverse of path 2)
-        exp = gridSize * gridSize - 1;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 != 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(i,j));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 7 (inverse of path 3)
-        exp = 0;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 != 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp++;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
-        
-        // path 8 (inverse of path 4)
-        exp = gridSize * gridSize - 1;
-        for (int i = 0; i < gridSize; i++) {
-            if (i % 2 != 0) {
-                for (int j = 0; j < gridSize; j++) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-            } else {
-                for (int j = gridSize - 1; j >= 0; j--) {
-                    int val = newBoard.get(new Location(j,i));
-                    if (val != -1)
-                        evaluation += val * Math.pow(evalBase, exp);
-                    exp--;
-                }
-                
-            }
-        }
-        if (evaluation > maxEvaluation)
-            maxEvaluation = evaluation;
+    private interface MoveScore {
         
-        return maxEvaluation;
+        /**
+         * Return the score of the grid obtained with a move.
+         * @param newBoard The grid after the move.
+         * @param alpha Score to beat (<code>Double.NEGATIVE_INFINITY</code>
+         * for no pruning).
+         * @return The score of the move, or
+         * <code>Double.NEGATIVE_INFINITY</code> if it cannot beat
+         * <code>alpha</code>.
+         */
+        double score(long newBoard, double alpha);
     }
 }
@@ -27,7 +27,7 @@ import java.util.Set;
 /**
  * This class represents a game grid. It's intended to be used in a player-side 
  * re-implementation of the grid, in order to calculate movements for the IA. 
- * The grid is transformated in an array of Row objects when needed.
+ * The grid is packed in a BitBoard when a move is needed.
  * @author Martino Pilia
  */
 public class MyGriglia extends HashMap<game2048.Location,Integer> implements Griglia {
@@ -70,7 +70,7 @@ public class MyGriglia extends HashMap<game2048.Location,Integer> implements Gri
         String out = "";
         for (int j = 0; j < gridSize; j++ ) {       // rows
             for (int i = 0; i < gridSize; i++) {    // column
-                String val = this.get(new Location(i, j)).toString();
+                String val = this.get(Location.of(i, j)).toString();
                 out += "\t" + ((val.equals("-1")) ? "0" : val);
             }
             out += "\n";
@@ -85,87 +85,25 @@ public class MyGriglia extends HashMap<game2048.Location,Integer> implements Gri
      * <code>false</code> otherwise.
      */
     public boolean isValida(int m) {
-        Row[] rows = new Row[gridSize]; // array of rows...
-        for (int i = 0; i < gridSize; i++) {
-            rows[i] = new Row();
-        }
-        // initialize rows
-        if (m == 0 || m == 2) { // ...each representing a column
-            for (int i = 0; i < gridSize; i++) { // lines
-                for (int j = 0; j < gridSize; j++) { // columns
-                    rows[i].add(this.get(new Location(i, j)));
-                }
-            }
-        } else { // ...each representing a line
-            for (int i = 0; i < gridSize; i++) { // columns
-                for (int j = 0; j < gridSize; j++) { // lines
-                    rows[i].add(this.get(new Location(j, i)));
-                }
-            }
-        }
-        
-        // set direction
-        int move = 0;
-        if (m == 0 || m == 2) // up or down
-            move = (m == 0) ? 0 : 1; // 0 for up, 1 for down
-        else // left or right
-            move = (m == 3) ? 0 : 1; // 0 for left, 1 for right
-        
-        boolean result = false;
-        for (int i = 0; i < gridSize; i++)
-            result |= rows[i].validRowMove(move);
-        return result;
+        return BitBoard.isValid(BitBoard.fromGriglia(this), m);
     }
 
     /**
      * This method does a move in the desired direction, following the 
-     * game rules.
+     * game rules. The grid is packed in a BitBoard and moved through the
+     * precomputed RowTables.
      * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
      */
     public void move(int m) {
-        Row[] rows = new Row[gridSize]; // array of rows...
-        for (int i = 0; i < gridSize; i++) {
-            rows[i] = new Row();
-        }
-        // initialize rows
-        if (m == 0 || m == 2) { // ...each representing a column
-            for (int i = 0; i < gridSize; i++) { // lines
-                for (int j = 0; j < gridSize; j++) { // columns
-                    rows[i].add(this.get(new Location(i, j)));
-                }
-            }
-        } else { // ...each representing a line
-            for (int i = 0; i < gridSize; i++) { // columns
-                for (int j = 0; j < gridSize; j++) { // lines
-                    rows[i].add(this.get(new Location(j, i)));
-                }
-            }
-        }
+        long board = BitBoard.fromGriglia(this);
+        long moved = BitBoard.move(board, m);
+        if (moved == board)
+            return;
         
-        // set direction
-        int move = 0;
-        if (m == 0 || m == 2) // up or down
-            move = (m == 0) ? 0 : 1; // 0 for up, 1 for down
-        else // left or right
-            move = (m == 3) ? 0 : 1; // 0 for left, 1 for right
-        
-        // move
-        for (int i = 0; i < gridSize; i++) {
-            rows[i].moveRow(move);
-        }
-                
         // update grid
-        if (m == 0 || m == 2) { // ...each representing a column
-            for (int i = 0; i < gridSize; i++) { // lines
-                for (int j = 0; j < gridSize; j++) { // columns
-                    this.put(new Location(i, j), rows[i].get(j));
-                }
-            }
-        } else { // ...each representing a line
-            for (int i = 0; i < gridSize; i++) { // columns
-                for (int j = 0; j < gridSize; j++) { // lines
-                    this.put(new Location(j, i), rows[i].get(j));
-                }
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                this.put(Location.of(i, j), BitBoard.getValue(moved, i, j));
             }
         }
     }
@@ -207,7 +145,7 @@ public class MyGriglia extends HashMap<game2048.Location,Integer> implements Gri
         int[][] matrix = new int[gridSize][gridSize];
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++)
-                matrix[i][j] = this.get(new Location(i, j));
+                matrix[i][j] = this.get(Location.of(i, j));
                 
         }
         return matrix;
@@ -0,0 +1,143 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+/**
+ * This class provides precomputed lookup tables for the moves of a single
+ * line of the grid. A line is packed in 16 bits, as in a BitBoard, so there
+ * are 65536 possible lines and each table has an entry for each of them.
+ * The tables are computed once, when the class is loaded, and replace the
+ * step by step compaction and merging of the tiles of a line.
+ * @author Martino Pilia
+ */
+public final class RowTables {
+
+    /** Number of possible lines. */
+    public static final int ROWS = 1 << 16;
+
+    private static final char[] LEFT = new char[ROWS];
+    private static final char[] RIGHT = new char[ROWS];
+    private static final int[] SCORE = new int[ROWS];
+
+    static {
+        for (int row = 0; row < ROWS; row++) {
+            int left = moveLeft(row);
+            LEFT[row] = (char) left;
+            RIGHT[reverse(row)] = (char) reverse(left);
+            SCORE[row] = mergeScore(row);
+        }
+    }
+
+    /**
+     * This class is not intended to be instantiated.
+     */
+    private RowTables() {
+    }
+
+    /**
+     * Return the line obtained moving the tiles towards the lowest nibble
+     * (left for a line, up for a transposed column).
+     * @param row The line, packed in the lowest 16 bits.
+     * @return The moved line.
+     */
+    public static int left(int row) {
+        return LEFT[row];
+    }
+
+    /**
+     * Return the line obtained moving the tiles towards the highest nibble
+     * (right for a line, down for a transposed column).
+     * @param row The line, packed in the lowest 16 bits.
+     * @return The moved line.
+     */
+    public static int right(int row) {
+        return RIGHT[row];
+    }
+
+    /**
+     * Return the points earned with the merges of a move along the line.
+     * A run of equal tiles gives the same merges in both directions, so the
+     * value is valid for both left and right moves.
+     * @param row The line, packed in the lowest 16 bits.
+     * @return Sum of the values of the merged tiles.
+     */
+    public static int score(int row) {
+        return SCORE[row];
+    }
+
+    /**
+     * Reverse the order of the cells in a line.
+     * @param row The line, packed in the lowest 16 bits.
+     * @return The reversed line.
+     */
+    public static int reverse(int row) {
+        return ((row >>> 12) & 0x000F) | ((row >>> 4) & 0x00F0)
+                | ((row << 4) & 0x0F00) | ((row << 12) & 0xF000);
+    }
+
+    /**
+     * Move a single line towards its lowest nibble: tiles are compacted and
+     * each couple of equal adjacent tiles is merged once. Tiles holding the
+     * highest storable exponent are not merged, since the result would not
+     * fit in a cell.
+     * @param row The line, packed in the lowest 16 bits.
+     * @return The moved line.
+     */
+    private static int moveLeft(int row) {
+        int out = 0;
+        int n = 0; // next free cell in the output
+        int last = 0; // exponent of the last tile placed, if still mergeable
+        for (int i = 0; i < BitBoard.GRID_SIZE; i++) {
+            int exp = (row >>> (4 * i)) & 0xF;
+            if (exp == 0)
+                continue;
+            if (exp == last && exp < BitBoard.MAX_EXPONENT) {
+                out += 1 << (4 * (n - 1)); // double the previous tile
+                last = 0;
+            } else {
+                out |= exp << (4 * n);
+                last = exp;
+                n++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Compute the points earned moving a line towards its lowest nibble.
+     * @param row The line, packed in the lowest 16 bits.
+     * @return Sum of the values of the merged tiles.
+     */
+    private static int mergeScore(int row) {
+        int score = 0;
+        int last = 0;
+        for (int i = 0; i < BitBoard.GRID_SIZE; i++) {
+            int exp = (row >>> (4 * i)) & 0xF;
+            if (exp == 0)
+                continue;
+            if (exp == last && exp < BitBoard.MAX_EXPONENT) {
+                score += 1 << (exp + 1);
+                last = 0;
+            } else {
+                last = exp;
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+/**
+ * This class provides static methods applying the 8 symmetries of the square
+ * (rotations and reflections) to a BitBoard. Two boards which are images of
+ * each other under a symmetry have the same canonical form, so they can be
+ * recognized as the same position by the search.
+ * The symmetries are numbered from 0 (identity) to 7; a set of symmetries is
+ * represented as a bit mask, with the bit <code>s</code> set for the
+ * symmetry <code>s</code>.
+ * @author Martino Pilia
+ */
+public final class Symmetry {
+
+    /** Number of symmetries of the square. */
+    public static final int COUNT = 8;
+
+    /** Mask containing only the identity. */
+    public static final int IDENTITY = 1;
+
+    private static final int[][] CELL_MAP = new int[COUNT][BitBoard.CELLS];
+
+    static {
+        for (int s = 0; s < COUNT; s++) {
+            for (int i = 0; i < BitBoard.CELLS; i++) {
+                long image = apply(1L << (4 * i), s);
+                CELL_MAP[s][i] = Long.numberOfTrailingZeros(image) / 4;
+            }
+        }
+    }
+
+    /**
+     * This class is not intended to be instantiated.
+     */
+    private Symmetry() {
+    }
+
+    /**
+     * Apply a symmetry to a board. The symmetries 1 to 3 are reflections
+     * around the axes and the rotation by 180 degrees; the symmetries 4 to 7
+     * are the first four followed by a transposition.
+     * @param board The board.
+     * @param s Number of the symmetry (0 to 7).
+     * @return The transformed board.
+     */
+    public static long apply(long board, int s) {
+        if ((s & 1) != 0)
+            board = mirrorX(board);
+        if ((s & 2) != 0)
+            board = mirrorY(board);
+        if ((s & 4) != 0)
+            board = BitBoard.transpose(board);
+        return board;
+    }
+
+    /**
+     * Return the canonical form of a board: the smallest of its 8 images.
+     * @param board The board.
+     * @return The canonical board.
+     */
+    public static long canonical(long board) {
+        long x = mirrorX(board);
+        long y = mirrorY(board);
+        long xy = mirrorY(x);
+        long min = Math.min(Math.min(board, x), Math.min(y, xy));
+        long t = Math.min(Math.min(BitBoard.transpose(board), BitBoard.transpose(x)),
+                Math.min(BitBoard.transpose(y), BitBoard.transpose(xy)));
+        return Math.min(min, t);
+    }
+
+    /**
+     * Return the set of the symmetries which leave a board unchanged. The
+     * identity is always in the set.
+     * @param board The board.
+     * @return Bit mask of the symmetries.
+     */
+    public static int stabilizer(long board) {
+        int mask = IDENTITY;
+        for (int s = 1; s < COUNT; s++) {
+            if (apply(board, s) == board)
+                mask |= 1 << s;
+        }
+        return mask;
+    }
+
+    /**
+     * Return the representative of a cell under a set of symmetries: the
+     * lowest index among the images of the cell.
+     * @param index Index of the cell.
+     * @param mask Bit mask of the symmetries.
+     * @return Index of the representative cell.
+     */
+    public static int representative(int index, int mask) {
+        int rep = index;
+        for (int s = 1; s < COUNT; s++) {
+            if ((mask & (1 << s)) != 0 && CELL_MAP[s][index] < rep)
+                rep = CELL_MAP[s][index];
+        }
+        return rep;
+    }
+
+    /**
+     * Reflect the board around the vertical axis (x becomes 3 - x).
+     * @param board The board.
+     * @return The reflected board.
+     */
+    private static long mirrorX(long board) {
+        board = (board & 0x0F0F0F0F0F0F0F0FL) << 4 | (board >>> 4) & 0x0F0F0F0F0F0F0F0FL;
+        return (board & 0x00FF00FF00FF00FFL) << 8 | (board >>> 8) & 0x00FF00FF00FF00FFL;
+    }
+
+    /**
+     * Reflect the board around the horizontal axis (y becomes 3 - y).
+     * @param board The board.
+     * @return The reflected board.
+     */
+    private static long mirrorY(long board) {
+        board = Long.reverseBytes(board);
+        return (board & 0x00FF00FF00FF00FFL) << 8 | (board >>> 8) & 0x00FF00FF00FF00FFL;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class provides a fixed size transposition table for the search
+ * algorithm. Each entry stores the result of the search from a position
+ * (score and best move), together with the search depth left and the maximum
+ * depth of the search it comes from, since both change the score of a
+ * position. The table never grows: each position has a single slot, chosen
+ * by hashing the packed board with the depths. A slot used by a previous
+ * search is always replaced, while inside the same search a slot is only
+ * replaced by an entry with at least the same depth left, which saved the
+ * most work.
+ * The table can be shared by the threads of a parallel search without
+ * locking: the board stored in a slot is xored with the rest of the entry, so
+ * an entry torn by two concurrent writes does not match any board and it's
+ * simply seen as a miss.
+ * The stored boards are also xored with a salt: changing it invalidates all
+ * the entries in constant time, without clearing the whole table.
+ * @author Martino Pilia
+ */
+public class TranspositionTable {
+
+    private static final int DEPTH_BITS = 8;
+    private static final int VALID = 1 << 31;
+
+    private final long[] checks; // board xor salt xor score xor entry
+    private final double[] scores;
+    private final int[] entries; // valid, generation, move, maxDepth, depth
+    private final int mask;
+    private volatile int generation;
+    private long salt; // changed to invalidate the entries
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * This is the constructor for the class.
+     * @param bits Base 2 logarithm of the number of slots.
+     */
+    public TranspositionTable(int bits) {
+        if (bits < 1 || bits > 30)
+            throw new IllegalArgumentException("Invalid table size: 2^" + bits);
+        int size = 1 << bits;
+        this.checks = new long[size];
+        this.scores = new double[size];
+        this.entries = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Tell the table a new search is starting. Entries stored by previous
+     * searches are still valid, but they can be replaced by any new entry.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0x7F;
+    }
+
+    /**
+     * Search a position in the table.
+     * @param board The position, packed in a BitBoard.
+     * @param depth Depth left for the search.
+     * @param maxDepth Maximum depth of the search.
+     * @return An array containing the best move in position <code>0</code>
+     * and the score in position <code>1</code>, or <code>null</code> if the
+     * position is not in the table.
+     */
+    public double[] find(long board, int depth, int maxDepth) {
+        int slot = slot(board, depth, maxDepth);
+        int entry = entries[slot];
+        double score = scores[slot];
+        long check = checks[slot];
+        if ((entry & VALID) != 0 && (entry & 0xFFFF) == depths(depth, maxDepth)
+                && (check ^ Double.doubleToRawLongBits(score) ^ entry)
+                == (board ^ salt)) {
+            hits.increment();
+            double[] out = {(entry >>> 16) & 0xFF, score};
+            return out;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store the result of the search from a position, following the
+     * replacement policy of the table.
+     * @param board The position, packed in a BitBoard.
+     * @param depth Depth left for the search.
+     * @param maxDepth Maximum depth of the search.
+     * @param score Score of the position.
+     * @param move Best move from the position.
+     */
+    public void store(long board, int depth, int maxDepth, double score, int move) {
+        int slot = slot(board, depth, maxDepth);
+        int old = entries[slot];
+        if ((old & VALID) != 0 && ((old >>> 24) & 0x7F) == generation
+                && (old & 0xFF) > depth)
+            return;
+        int entry = VALID | generation << 24 | (move & 0xFF) << 16
+                | depths(depth, maxDepth);
+        checks[slot] = board ^ salt ^ Double.doubleToRawLongBits(score)
+                ^ entry;
+        scores[slot] = score;
+        entries[slot] = entry;
+    }
+
+    /**
+     * Invalidate all the entries in constant time, changing the salt of the
+     * stored boards, so the positions stored so far are not found anymore.
+     * Like {@link #clear() clear}, it must not be called during a search.
+     */
+    public void invalidate() {
+        salt += 0x9E3779B97F4A7C15L;
+        newSearch(); // the old entries can be replaced
+    }
+
+    /**
+     * Remove all the entries from the table and reset the counters.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Return the number of positions found in the table.
+     * @return Number of successful lookups.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of positions not found in the table.
+     * @return Number of failed lookups.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Return the number of slots in the table.
+     * @return Size of the table.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Pack the two depths in the lowest 16 bits of an entry.
+     */
+    private static int depths(int depth, int maxDepth) {
+        return (maxDepth & 0xFF) << DEPTH_BITS | (depth & 0xFF);
+    }
+
+    /**
+     * Compute the slot of a position, mixing the bits of the board and of the
+     * depths (finalizer of MurmurHash3).
+     */
+    private int slot(long board, int depth, int maxDepth) {
+        long h = board ^ ((long) depths(depth, maxDepth) * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+import game2048.Location;
+import java.util.Map;
+
+/**
+ * This class provides the moves of a square grid of any size from 3 to 8,
+ * packed in an array of <code>long</code> words. As in a BitBoard, each cell
+ * holds the base 2 logarithm of its tile (0 for an empty cell), but it takes
+ * 5 bits, so the tiles can grow up to 2^30. Each line of the grid takes
+ * <code>5 * gridSize</code> bits, with the cell x = 0 in the lowest bits,
+ * and the lines are packed in the words without crossing their boundaries:
+ * the line y is stored in the word <code>y / linesPerWord</code>.
+ * The moves of a line are read from precomputed tables, left and right,
+ * indexed by the bits of the line, for the grids up to 4x4; the lines of the
+ * larger grids would need tables with 2^25 entries or more, so they are
+ * moved cell by cell. The columns are gathered in a line, moved and
+ * scattered back. The methods never allocate: the result of a move is
+ * written in a board passed by the caller.
+ * An instance is shared by all the players using the same grid size, and it
+ * is immutable, so it can be used by more threads at the same time.
+ * @author Martino Pilia
+ */
+public final class WideBoard {
+
+    /** Smallest supported grid size. */
+    public static final int MIN_GRID_SIZE = 3;
+
+    /** Largest supported grid size. */
+    public static final int MAX_GRID_SIZE = 8;
+
+    /** Number of bits of a cell. */
+    public static final int CELL_BITS = 5;
+
+    /** Highest exponent which can be stored in a cell. */
+    public static final int MAX_EXPONENT = 30;
+
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+    private static final int TABLE_BITS = 20; // widest line with tables
+    private static final WideBoard[] BOARDS = new WideBoard[MAX_GRID_SIZE + 1];
+
+    private final int gridSize;
+    private final int lineBits;
+    private final long lineMask;
+    private final int linesPerWord;
+    private final int words;
+    private final int[] left; // moved lines, null without tables
+    private final int[] right;
+
+    /**
+     * Return the instance for a grid size, building it the first time.
+     * @param gridSize Size of the grid.
+     * @return The instance for the grid size.
+     * @throws IllegalArgumentException if the grid size is not supported.
+     */
+    public static synchronized WideBoard of(int gridSize) {
+        if (gridSize < MIN_GRID_SIZE || gridSize > MAX_GRID_SIZE)
+            throw new IllegalArgumentException("Unsupported grid size: "
+                    + gridSize);
+        if (BOARDS[gridSize] == null)
+            BOARDS[gridSize] = new WideBoard(gridSize);
+        return BOARDS[gridSize];
+    }
+
+    /**
+     * This is the constructor for the class. The tables of the lines are
+     * computed here, when they are used.
+     * @param gridSize Size of the grid.
+     */
+    private WideBoard(int gridSize) {
+        this.gridSize = gridSize;
+        this.lineBits = CELL_BITS * gridSize;
+        this.lineMask = (1L << lineBits) - 1;
+        this.linesPerWord = Long.SIZE / lineBits;
+        this.words = (gridSize + linesPerWord - 1) / linesPerWord;
+        if (lineBits <= TABLE_BITS) {
+            int lines = 1 << lineBits;
+            left = new int[lines];
+            right = new int[lines];
+            for (int line = 0; line < lines; line++) {
+                left[line] = (int) slideLow(line);
+                right[line] = (int) slideHigh(line);
+            }
+        } else {
+            left = null;
+            right = null;
+        }
+    }
+
+    /**
+     * Return the size of the grid.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Return the number of cells of the grid.
+     * @return Number of cells.
+     */
+    public int cells() {
+        return gridSize * gridSize;
+    }
+
+    /**
+     * Return a new empty board.
+     * @return An empty board.
+     */
+    public long[] newBoard() {
+        return new long[words];
+    }
+
+    /**
+     * Copy a board in another one.
+     * @param board The board to be copied.
+     * @param out The board to be overwritten.
+     */
+    public void copy(long[] board, long[] out) {
+        System.arraycopy(board, 0, out, 0, words);
+    }
+
+    /**
+     * Check if two boards hold the same grid.
+     * @param a A board.
+     * @param b Another board.
+     * @return <code>true</code> if the boards are equal,
+     * <code>false</code> otherwise.
+     */
+    public boolean equal(long[] a, long[] b) {
+        for (int i = 0; i < words; i++) {
+            if (a[i] != b[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * This method fills a board with a grid. Only the cells inside the grid
+     * are read, so the reserved locations used for the settings are ignored.
+     * @param grid Grid to be packed (-1 for empty cells).
+     * @param board The board to be filled.
+     * @throws IllegalArgumentException if a tile value is not a power of 2
+     * which fits in a cell.
+     */
+    public void fromGriglia(Map<Location, Integer> grid, long[] board) {
+        clear(board);
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                Integer val = grid.get(Location.of(x, y));
+                if (val == null || val == -1)
+                    continue;
+                setExponent(board, index(x, y), exponentOf(val));
+            }
+        }
+    }
+
+    /**
+     * Remove all the tiles from a board.
+     * @param board The board.
+     */
+    public void clear(long[] board) {
+        for (int i = 0; i < words; i++)
+            board[i] = 0;
+    }
+
+    /**
+     * Return the base 2 logarithm of a tile value.
+     * @param value Tile value.
+     * @return The exponent of the value.
+     * @throws IllegalArgumentException if the value is not a power of 2
+     * which fits in a cell.
+     */
+    public static int exponentOf(int value) {
+        int exp = Integer.numberOfTrailingZeros(value);
+        if (value < 2 || Integer.bitCount(value) != 1 || exp > MAX_EXPONENT)
+            throw new IllegalArgumentException("The value " + value
+                    + " cannot be stored in a board cell");
+        return exp;
+    }
+
+    /**
+     * Return the index of the cell in the desired location.
+     * @param x The x coord.
+     * @param y The y coord.
+     * @return Index of the cell.
+     */
+    public int index(int x, int y) {
+        return gridSize * y + x;
+    }
+
+    /**
+     * Return the exponent stored in a cell.
+     * @param board The board.
+     * @param index Index of the cell.
+     * @return The exponent of the tile, <code>0</code> for an empty cell.
+     */
+    public int getExponent(long[] board, int index) {
+        int y = index / gridSize;
+        int shift = (y % linesPerWord) * lineBits
+                + (index - y * gridSize) * CELL_BITS;
+        return (int) (board[y / linesPerWord] >>> shift & CELL_MASK);
+    }
+
+    /**
+     * Store an exponent in a cell.
+     * @param board The board.
+     * @param index Index of the cell.
+     * @param exp Exponent to be stored.
+     */
+    public void setExponent(long[] board, int index, int exp) {
+        int y = index / gridSize;
+        int shift = (y % linesPerWord) * lineBits
+                + (index - y * gridSize) * CELL_BITS;
+        int w = y / linesPerWord;
+        board[w] = (board[w] & ~(CELL_MASK << shift)) | ((long) exp << shift);
+    }
+
+    /**
+     * Return the value of the tile in the desired location, using the same
+     * convention of the Griglia interface.
+     * @param board The board.
+     * @param x The x coord.
+     * @param y The y coord.
+     * @return The tile value, <code>-1</code> for an empty cell.
+     */
+    public int getValue(long[] board, int x, int y) {
+        int exp = getExponent(board, index(x, y));
+        return exp == 0 ? -1 : 1 << exp;
+    }
+
+    /**
+     * This method returns the number of empty cells in the board.
+     * @param board The board.
+     * @return Number of empty cells.
+     */
+    public int emptyCount(long[] board) {
+        int count = 0;
+        for (int y = 0; y < gridSize; y++) {
+            long line = line(board, y);
+            for (int x = 0; x < gridSize; x++) {
+                if ((line >>> (CELL_BITS * x) & CELL_MASK) == 0)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method returns the sum of the values of the tiles in the board.
+     * @param board The board.
+     * @return Sum of the tile values.
+     */
+    public long tileSum(long[] board) {
+        long sum = 0;
+        for (int y = 0; y < gridSize; y++) {
+            long line = line(board, y);
+            for (int x = 0; x < gridSize; x++) {
+                int exp = (int) (line >>> (CELL_BITS * x) & CELL_MASK);
+                if (exp != 0)
+                    sum += 1L << exp;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * This method does a move in the desired direction, following the game
+     * rules.
+     * @param board The board.
+     * @param m 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     * @param out The board to be filled with the result of the move. It's
+     * equal to the original board if the move is not valid. It must not be
+     * the same array of the board.
+     * @return <code>true</code> if the move is valid,
+     * <code>false</code> otherwise.
+     */
+    public boolean move(long[] board, int m, long[] out) {
+        switch (m) {
+            case 0:
+            case 2:
+                copy(board, out);
+                for (int x = 0; x < gridSize; x++) {
+                    long column = column(board, x);
+                    long moved = m == 0 ? moveLow(column) : moveHigh(column);
+                    if (moved != column)
+                        setColumn(out, x, moved);
+                }
+                break;
+            case 1:
+            case 3:
+                clear(out);
+                for (int y = 0; y < gridSize; y++) {
+                    long line = line(board, y);
+                    long moved = m == 3 ? moveLow(line) : moveHigh(line);
+                    out[y / linesPerWord] |= moved
+                            << ((y % linesPerWord) * lineBits);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid move " + m);
+        }
+        return !equal(board, out);
+    }
+
+    /**
+     * Return the set of the legal moves of a board.
+     * @param board The board.
+     * @param scratch A board used for the moves, overwritten.
+     * @return A bit mask, with the bit m set if the move m is legal
+     * (0=ALTO; 1=DX; 2=BASSO; 3=SX).
+     */
+    public int legalMoves(long[] board, long[] scratch) {
+        int mask = 0;
+        for (int m = 0; m < 4; m++) {
+            if (move(board, m, scratch))
+                mask |= 1 << m;
+        }
+        return mask;
+    }
+
+    /**
+     * Return a line of the board.
+     * @param board The board.
+     * @param y Index of the line.
+     * @return The line, packed in the lowest bits.
+     */
+    public long line(long[] board, int y) {
+        return board[y / linesPerWord] >>> ((y % linesPerWord) * lineBits)
+                & lineMask;
+    }
+
+    /**
+     * Return a column of the board, packed as a line with the cell y = 0 in
+     * the lowest bits.
+     */
+    private long column(long[] board, int x) {
+        long column = 0;
+        for (int y = 0; y < gridSize; y++)
+            column |= (long) getExponent(board, index(x, y)) << (CELL_BITS * y);
+        return column;
+    }
+
+    /**
+     * Store a column in the board.
+     */
+    private void setColumn(long[] board, int x, long column) {
+        for (int y = 0; y < gridSize; y++)
+            setExponent(board, index(x, y),
+                    (int) (column >>> (CELL_BITS * y) & CELL_MASK));
+    }
+
+    /**
+     * Move a line towards its lowest cell (left for a line, up for a column).
+     */
+    private long moveLow(long line) {
+        return left != null ? left[(int) line] : slideLow(line);
+    }
+
+    /**
+     * Move a line towards its highest cell (right for a line, down for a
+     * column).
+     */
+    private long moveHigh(long line) {
+        return right != null ? right[(int) line] : slideHigh(line);
+    }
+
+    /**
+     * Move a single line towards its lowest cell: tiles are compacted and
+     * each couple of equal adjacent tiles is merged once. Tiles holding the
+     * highest storable exponent are not merged, since the result would not
+     * fit in a cell.
+     */
+    private long slideLow(long line) {
+        long out = 0;
+        int n = 0; // next free cell in the output
+        int last = 0; // exponent of the last tile placed, if still mergeable
+        for (int i = 0; i < gridSize; i++) {
+            int exp = (int) (line >>> (CELL_BITS * i) & CELL_MASK);
+            if (exp == 0)
+                continue;
+            if (exp == last && exp < MAX_EXPONENT) {
+                out += 1L << (CELL_BITS * (n - 1)); // double the previous tile
+                last = 0;
+            } else {
+                out |= (long) exp << (CELL_BITS * n);
+                last = exp;
+                n++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Move a single line towards its highest cell, as slideLow() does in the
+     * opposite direction.
+     */
+    private long slideHigh(long line) {
+        long out = 0;
+        int n = gridSize - 1; // next free cell in the output
+        int last = 0;
+        for (int i = gridSize - 1; i >= 0; i--) {
+            int exp = (int) (line >>> (CELL_BITS * i) & CELL_MASK);
+            if (exp == 0)
+                continue;
+            if (exp == last && exp < MAX_EXPONENT) {
+                out += 1L << (CELL_BITS * (n + 1));
+                last = 0;
+            } else {
+                out |= (long) exp << (CELL_BITS * n);
+                last = exp;
+                n--;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Return a string representation of a board, in the same format used by
+     * BitBoard.
+     * @param board The board.
+     * @return A string representing the board.
+     */
+    public String toString(long[] board) {
+        String out = "";
+        for (int j = 0; j < gridSize; j++ ) {       // rows
+            for (int i = 0; i < gridSize; i++) {    // column
+                int val = getValue(board, i, j);
+                out += "\t" + ((val == -1) ? "0" : val);
+            }
+            out += "\n";
+        }
+        return out;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+/**
+ * This class implements the minimax and expectimax searches of the automatic
+ * player on a WideBoard, for the grids which do not fit in a BitBoard (other
+ * grid sizes, or tiles from 32768 up). The searches follow the ones on the
+ * BitBoard: the minimax chooses the best move against the worst tile adding,
+ * a 2 in the free cell with the lowest weight; the expectimax averages the
+ * scores of all the addings, weighted by their probability, and stops
+ * expanding a branch when its probability drops below a threshold. The
+ * positions are evaluated along the main snake shaped path of the grid,
+ * through a table indexed by cell and exponent.
+ * The boards of each ply are preallocated and reused across the searches,
+ * so the search does not allocate. An instance is not thread safe: each
+ * player owns its own.
+ * @author Martino Pilia
+ */
+final class WideSearch {
+
+    private static final int EXPONENTS = WideBoard.MAX_EXPONENT + 1;
+
+    private final WideBoard boards;
+    private final int cells;
+    private final double[] tiles; // score of a tile, by cell and exponent
+    private final int[] spawnOrder; // cells by increasing weight
+    private final double probabilityThreshold;
+    private long[][] plies = new long[0][]; // a board for each ply
+    private long deadline; // System.nanoTime() limit, 0 for none
+    private boolean aborted;
+    private long nodes;
+
+    /**
+     * This is the constructor for the class.
+     * @param boards The moves for the grid size.
+     * @param base Base of the exponential decrease of the weights along the
+     * path.
+     * @param probabilityThreshold Probability below which the expectimax
+     * does not expand a branch.
+     */
+    WideSearch(WideBoard boards, double base, double probabilityThreshold) {
+        this.boards = boards;
+        this.cells = boards.cells();
+        this.probabilityThreshold = probabilityThreshold;
+        int n = boards.getGridSize();
+        double[] weights = new double[cells];
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++)
+                weights[boards.index(x, y)] = Math.pow(base,
+                        n * x + (x % 2 == 0 ? y : n - 1 - y));
+        }
+        this.tiles = new double[cells * EXPONENTS];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int exp = 1; exp < EXPONENTS; exp++)
+                tiles[cell * EXPONENTS + exp] = (1L << exp) * weights[cell];
+        }
+        this.spawnOrder = new int[cells];
+        for (int i = 0; i < cells; i++) {
+            int rank = 0; // number of cells with a lower weight
+            for (int j = 0; j < cells; j++) {
+                if (weights[j] < weights[i])
+                    rank++;
+            }
+            spawnOrder[rank] = i;
+        }
+    }
+
+    /**
+     * Return the size of the grid searched.
+     * @return The grid size.
+     */
+    int getGridSize() {
+        return boards.getGridSize();
+    }
+
+    /**
+     * Return the number of nodes visited by the last search.
+     * @return Number of visited nodes.
+     */
+    long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * This method searches the best move with the desired algorithm and
+     * depth.
+     * @param board The current grid.
+     * @param style 3 = minimax, 4 = expectimax
+     * @param depth Depth for the search.
+     * @return 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     */
+    int search(long[] board, int style, int depth) {
+        nodes = 0;
+        aborted = false;
+        ensurePlies(depth);
+        boards.copy(board, plies[0]);
+        int bestMove = 0;
+        double bestScore = -1;
+        boolean moved = false;
+        for (int m = 0; m < 4; m++) {
+            long[] newBoard = plies[1];
+            if (!boards.move(plies[0], m, newBoard))
+                continue;
+            double score = evaluate(newBoard);
+            if (style == 4) {
+                if (depth > 1)
+                    score = chanceNode(1, score, depth - 1, 1);
+            } else {
+                score = minimaxScore(1, score, depth, depth, 0.9);
+            }
+            if (!moved || score > bestScore) {
+                bestMove = m;
+                bestScore = score;
+                moved = true;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * This method searches the best move with increasing depth, one ply at a
+     * time, until the time budget runs out, and returns the move found by
+     * the deepest completed search. The search with depth 1 is always
+     * completed.
+     * @param board The current grid.
+     * @param style 3 = minimax, 4 = expectimax
+     * @param timeBudget Time budget for the move, in milliseconds.
+     * @param maxDepth Maximum depth of the search.
+     * @return 0=ALTO; 1=DX; 2=BASSO; 3=SX
+     */
+    int searchIterative(long[] board, int style, int timeBudget,
+            int maxDepth) {
+        int move = search(board, style, 1);
+        deadline = System.nanoTime() + timeBudget * 1000000L;
+        for (int depth = 2; depth <= maxDepth; depth++) {
+            int next = search(board, style, depth);
+            if (aborted)
+                break; // incomplete search, keep the previous result
+            move = next;
+        }
+        deadline = 0;
+        aborted = false;
+        return move;
+    }
+
+    /**
+     * Make sure there is a board for each ply of a search.
+     */
+    private void ensurePlies(int depth) {
+        int needed = 2 * depth + 2; // a move and an adding for each level
+        if (plies.length >= needed)
+            return;
+        plies = new long[needed][];
+        for (int i = 0; i < needed; i++)
+            plies[i] = boards.newBoard();
+    }
+
+    /**
+     * Check if the time budget of the current search is over, or the
+     * searching thread has been interrupted.
+     */
+    private boolean outOfTime() {
+        if (!aborted && ((deadline != 0 && System.nanoTime() - deadline > 0)
+                || Thread.currentThread().isInterrupted()))
+            aborted = true;
+        return aborted;
+    }
+
+    /**
+     * Score of the grid in a ply, after a move, in the minimax search: its
+     * evaluation plus the ammortized score of the search after the worst
+     * adding.
+     * @param ply Ply of the grid after the move.
+     * @param score Evaluation of the grid after the move.
+     * @param depth Depth for the search.
+     * @param maxDepth Maximum depth search.
+     * @param base Base for the exponential ammortization of the score.
+     * @return The score of the move.
+     */
+    private double minimaxScore(int ply, double score, int depth,
+            int maxDepth, double base) {
+        if (depth == 0 || outOfTime())
+            return 0;
+        double weight = Math.pow(base, maxDepth - depth + 1);
+        long[] added = plies[ply + 1];
+        boards.copy(plies[ply], added);
+        for (int k = 0; k < cells; k++) {
+            int cell = spawnOrder[k];
+            if (boards.getExponent(added, cell) == 0) {
+                boards.setExponent(added, cell, 1);
+                break;
+            }
+        }
+        return score + minimaxNode(ply + 1, depth - 1, maxDepth) * weight;
+    }
+
+    /**
+     * Move layer of the minimax search: the best score over the moves of the
+     * grid in a ply.
+     */
+    private double minimaxNode(int ply, int depth, int maxDepth) {
+        nodes++;
+        double bestScore = -1;
+        long[] newBoard = plies[ply + 1];
+        for (int m = 0; m < 4; m++) {
+            if (!boards.move(plies[ply], m, newBoard))
+                continue;
+            double score = minimaxScore(ply + 1, evaluate(newBoard), depth,
+                    maxDepth, 0.9);
+            if (score > bestScore)
+                bestScore = score;
+        }
+        return bestScore;
+    }
+
+    /**
+     * Move layer of the expectimax search: the best expected score over the
+     * moves of the grid in a ply.
+     */
+    private double expectimaxNode(int ply, int depth, double probability) {
+        nodes++;
+        double bestScore = 0; // score for a lost game
+        long[] newBoard = plies[ply + 1];
+        for (int m = 0; m < 4; m++) {
+            if (!boards.move(plies[ply], m, newBoard))
+                continue;
+            double score = evaluate(newBoard);
+            if (depth > 1)
+                score = chanceNode(ply + 1, score, depth - 1, probability);
+            if (score > bestScore)
+                bestScore = score;
+        }
+        return bestScore;
+    }
+
+    /**
+     * Chance layer of the expectimax search: the average score over all the
+     * tile addings in the grid of a ply, weighted by their probability.
+     */
+    private double chanceNode(int ply, double evaluation, int depth,
+            double probability) {
+        nodes++;
+        long[] grid = plies[ply];
+        int empty = boards.emptyCount(grid);
+        if (probability < probabilityThreshold || empty == 0 || outOfTime())
+            return evaluation;
+        long[] added = plies[ply + 1];
+        double score = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (boards.getExponent(grid, cell) != 0)
+                continue;
+            for (int exp = 1; exp <= 2; exp++) {
+                double weight = exp == 1 ? 0.9 : 0.1;
+                boards.copy(grid, added);
+                boards.setExponent(added, cell, exp);
+                score += weight * expectimaxNode(ply + 1, depth,
+                        probability * weight / empty);
+            }
+        }
+        return score / empty;
+    }
+
+    /**
+     * Evaluate a grid along the main path of the grid, starting from the
+     * cell (0, 0) and going down the even columns and up the odd ones.
+     */
+    private double evaluate(long[] board) {
+        double evaluation = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int exp = boards.getExponent(board, cell);
+            if (exp != 0)
+                evaluation += tiles[cell * EXPONENTS + exp];
+        }
+        return evaluation;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of 2048FXAuto
+ * Copyright (C) 2014 Martino Pilia <git.m.pilia@gmail.com>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package giocatoreAutomatico.player;
+
+import game2048.Location;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests of the moves chosen by MyGiocatoreAutomatico.
+ * @author Martino Pilia
+ */
+public class MyGiocatoreAutomaticoTest {
+
+    /**
+     * Build a 4x4 grid from its rows, 0 for an empty cell.
+     */
+    private static MyGriglia grid(int[][] rows, int style) {
+        MyGriglia g = new MyGriglia();
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length; x++)
+                g.put(Location.of(x, y), rows[y][x] == 0 ? -1 : rows[y][x]);
+        }
+        g.put(Location.of(-1, -1), style);
+        g.put(Location.of(-1, -2), 3);
+        return g;
+    }
+
+    /**
+     * Two 32768 tiles cannot be merged on a BitBoard, so the grid must be
+     * searched on a WideBoard, where moving up merges them in the corner.
+     */
+    @Test
+    public void mergesTwo32768Tiles() {
+        int[][] rows = {
+            {32768, 2, 4, 2},
+            {32768, 4, 8, 0},
+            {16384, 8, 2, 0},
+            {8192, 2, 0, 0}};
+        for (int style = 3; style <= 4; style++) {
+            MyGiocatoreAutomatico player = new MyGiocatoreAutomatico();
+            assertEquals("style " + style, 0,
+                    player.prossimaMossa(grid(rows, style)));
+        }
+    }
+}